@@ -0,0 +1,24 @@
+package com.example.demojsonlogging.configuration;
+
+import com.example.demojsonlogging.filter.CaptureBufferPool;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Body capture limits and buffer pool shared by the servlet and reactive
+ * request logging filters.
+ */
+@Configuration
+@ConditionalOnWebApplication
+public class CaptureBufferPoolConfiguration {
+
+    static final int MAX_PAYLOAD_LENGTH = 2048;
+
+    private static final int CAPTURE_POOL_CAPACITY = 256;
+
+    @Bean
+    public CaptureBufferPool captureBufferPool() {
+        return new CaptureBufferPool(MAX_PAYLOAD_LENGTH, CAPTURE_POOL_CAPACITY);
+    }
+}
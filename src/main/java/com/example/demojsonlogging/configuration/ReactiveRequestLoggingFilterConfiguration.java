@@ -0,0 +1,25 @@
+package com.example.demojsonlogging.configuration;
+
+import com.example.demojsonlogging.filter.CaptureBufferPool;
+import com.example.demojsonlogging.filter.DemoLoggingWebFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRequestLoggingFilterConfiguration {
+
+    @Bean
+    public DemoLoggingWebFilter requestLogWebFilter(CaptureBufferPool captureBufferPool) {
+        DemoLoggingWebFilter loggingFilter = new DemoLoggingWebFilter();
+        loggingFilter.setIncludeQueryString(true);
+        loggingFilter.setIncludeClientInfo(true);
+        loggingFilter.setIncludeHeaders(true);
+        loggingFilter.setIncludePayload(true);
+        loggingFilter.setMaxPayloadLength(CaptureBufferPoolConfiguration.MAX_PAYLOAD_LENGTH);
+        loggingFilter.setCaptureBufferPool(captureBufferPool);
+        loggingFilter.setShouldLogBefore(true);
+        return loggingFilter;
+    }
+}
@@ -1,21 +1,39 @@
 package com.example.demojsonlogging.configuration;
 
+import com.example.demojsonlogging.filter.CaptureBufferPool;
 import com.example.demojsonlogging.filter.DemoLoggingFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.servlet.DispatcherType;
+
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class RequestLoggingFilterConfiguration {
 
     @Bean
-    public DemoLoggingFilter requestLogFilter() {
+    public DemoLoggingFilter requestLogFilter(CaptureBufferPool captureBufferPool) {
         DemoLoggingFilter loggingFilter = new DemoLoggingFilter();
         loggingFilter.setIncludeQueryString(true);
         loggingFilter.setIncludeClientInfo(true);
         loggingFilter.setIncludeHeaders(true);
         loggingFilter.setIncludePayload(true);
-        loggingFilter.setMaxPayloadLength(2048);
+        loggingFilter.setMaxPayloadLength(CaptureBufferPoolConfiguration.MAX_PAYLOAD_LENGTH);
+        loggingFilter.setCaptureBufferPool(captureBufferPool);
         loggingFilter.setShouldLogBefore(true);
         return loggingFilter;
     }
+
+    /**
+     * Run the filter on async dispatches too, so that the END message of an
+     * async request is logged and its capture buffers are released.
+     */
+    @Bean
+    public FilterRegistrationBean<DemoLoggingFilter> requestLogFilterRegistration(DemoLoggingFilter requestLogFilter) {
+        FilterRegistrationBean<DemoLoggingFilter> registration = new FilterRegistrationBean<>(requestLogFilter);
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+        return registration;
+    }
 }
@@ -1,10 +1,12 @@
 package com.example.demojsonlogging.dto;
 
+import com.example.demojsonlogging.logger.LoggableFields;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
 @Data
 @AllArgsConstructor
+@LoggableFields
 public class FakeNews {
     private int id;
     private String title;
@@ -1,5 +1,6 @@
 package com.example.demojsonlogging.dto;
 
+import com.example.demojsonlogging.logger.LoggableFields;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -7,6 +8,7 @@ import lombok.NoArgsConstructor;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@LoggableFields
 public class FakeNewsReqDTO {
     private String category;
     private String type;
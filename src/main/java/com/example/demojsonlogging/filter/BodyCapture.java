@@ -0,0 +1,99 @@
+package com.example.demojsonlogging.filter;
+
+import org.springframework.lang.Nullable;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+/**
+ * Keeps the first bytes of a body in a buffer borrowed from a
+ * {@link CaptureBufferPool}. The buffer is only borrowed on the first byte,
+ * so requests without a body never touch the pool.
+ * <p>Writes and {@link #release()} are synchronized: a reactive body can still
+ * be streaming through when a cancelled exchange releases the buffer, and the
+ * buffer must not be handed to another request while it is being written.
+ */
+class BodyCapture {
+
+    private final CaptureBufferPool pool;
+
+    @Nullable
+    private byte[] buffer;
+
+    private int count;
+
+    private boolean released = false;
+
+    BodyCapture(CaptureBufferPool pool) {
+        this.pool = pool;
+    }
+
+    synchronized void write(int b) {
+        if (acquireBuffer() && this.count < this.buffer.length) {
+            this.buffer[this.count++] = (byte) b;
+        }
+    }
+
+    synchronized void write(byte[] b, int off, int len) {
+        if (len <= 0 || !acquireBuffer()) {
+            return;
+        }
+        int length = Math.min(len, this.buffer.length - this.count);
+        if (length > 0) {
+            System.arraycopy(b, off, this.buffer, this.count, length);
+            this.count += length;
+        }
+    }
+
+    /**
+     * Copy the readable bytes of the given buffer, leaving its position untouched.
+     */
+    synchronized void write(ByteBuffer b) {
+        if (!b.hasRemaining() || !acquireBuffer()) {
+            return;
+        }
+        int length = Math.min(b.remaining(), this.buffer.length - this.count);
+        if (length > 0) {
+            b.duplicate().get(this.buffer, this.count, length);
+            this.count += length;
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    synchronized void reset() {
+        this.count = 0;
+    }
+
+    @Nullable
+    synchronized String toString(String charsetName, int maxLength) throws UnsupportedEncodingException {
+        if (this.buffer == null || this.count == 0) {
+            return null;
+        }
+        return new String(this.buffer, 0, Math.min(this.count, maxLength), charsetName);
+    }
+
+    /**
+     * Return the buffer to the pool. Anything written afterwards is ignored.
+     */
+    synchronized void release() {
+        this.released = true;
+        if (this.buffer != null) {
+            this.pool.release(this.buffer);
+            this.buffer = null;
+            this.count = 0;
+        }
+    }
+
+    private boolean acquireBuffer() {
+        if (this.buffer == null) {
+            if (this.released || this.pool.getBufferSize() == 0) {
+                return false;
+            }
+            this.buffer = this.pool.acquire();
+        }
+        return true;
+    }
+}
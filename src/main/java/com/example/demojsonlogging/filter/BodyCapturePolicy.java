@@ -0,0 +1,89 @@
+package com.example.demojsonlogging.filter;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decides from the content type and length whether a request or response body
+ * is worth capturing for the log message at all.
+ * <p>By default multipart uploads, binary content and event streams are never
+ * captured, nor are bodies declared larger than 1 MB.
+ */
+public class BodyCapturePolicy {
+
+    private static final long DEFAULT_MAX_CONTENT_LENGTH = 1024 * 1024;
+
+    private static final List<MediaType> DEFAULT_SKIPPED_MEDIA_TYPES = Arrays.asList(
+            MediaType.parseMediaType("multipart/*"),
+            MediaType.parseMediaType("image/*"),
+            MediaType.parseMediaType("audio/*"),
+            MediaType.parseMediaType("video/*"),
+            MediaType.APPLICATION_OCTET_STREAM,
+            MediaType.APPLICATION_PDF,
+            MediaType.parseMediaType("application/zip"),
+            MediaType.TEXT_EVENT_STREAM,
+            MediaType.APPLICATION_STREAM_JSON);
+
+    private List<MediaType> skippedMediaTypes = DEFAULT_SKIPPED_MEDIA_TYPES;
+
+    private long maxContentLength = DEFAULT_MAX_CONTENT_LENGTH;
+
+    /**
+     * Set the media types whose bodies are never captured. Wildcards such as
+     * {@code multipart/*} are supported.
+     */
+    public void setSkippedMediaTypes(List<MediaType> skippedMediaTypes) {
+        Assert.notNull(skippedMediaTypes, "'skippedMediaTypes' must not be null");
+        this.skippedMediaTypes = skippedMediaTypes;
+    }
+
+    public List<MediaType> getSkippedMediaTypes() {
+        return this.skippedMediaTypes;
+    }
+
+    /**
+     * Set the declared content length above which a body is not captured.
+     * Default is 1 MB.
+     */
+    public void setMaxContentLength(long maxContentLength) {
+        Assert.isTrue(maxContentLength >= 0, "'maxContentLength' should be larger than or equal to 0");
+        this.maxContentLength = maxContentLength;
+    }
+
+    public long getMaxContentLength() {
+        return this.maxContentLength;
+    }
+
+    /**
+     * Return whether a body with the given content type and declared length
+     * should be captured.
+     *
+     * @param contentType   the {@code Content-Type} header, if any
+     * @param contentLength the declared length, or {@code -1} if unknown
+     */
+    public boolean shouldCapture(@Nullable String contentType, long contentLength) {
+        if (contentLength > this.maxContentLength) {
+            return false;
+        }
+        if (contentType == null) {
+            return true;
+        }
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        for (MediaType skipped : this.skippedMediaTypes) {
+            if (skipped.includes(mediaType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.demojsonlogging.filter;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.lang.Nullable;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link HttpServletRequest} wrapper that keeps the first bytes read from the
+ * request body in a pooled buffer, as a bounded replacement for
+ * {@link org.springframework.web.util.ContentCachingRequestWrapper}.
+ * <p>Like that class, it rebuilds the body of a form post from the request
+ * parameters when they are read, since the container parses them from the
+ * raw request without going through this wrapper.
+ * <p>Call {@link #release()} once the log message has been written.
+ */
+public class BodyCaptureRequestWrapper extends HttpServletRequestWrapper {
+
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+    private final BodyCapture capture;
+
+    @Nullable
+    private ServletInputStream inputStream;
+
+    @Nullable
+    private BufferedReader reader;
+
+    public BodyCaptureRequestWrapper(HttpServletRequest request, CaptureBufferPool pool) {
+        super(request);
+        this.capture = new BodyCapture(pool);
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (this.inputStream == null) {
+            this.inputStream = new CapturingInputStream(getRequest().getInputStream());
+        }
+        return this.inputStream;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        String enc = super.getCharacterEncoding();
+        return (enc != null ? enc : WebUtils.DEFAULT_CHARACTER_ENCODING);
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (this.reader == null) {
+            this.reader = new BufferedReader(new InputStreamReader(getInputStream(), getCharacterEncoding()));
+        }
+        return this.reader;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        if (isFormPost()) {
+            writeRequestParametersToCapture();
+        }
+        return super.getParameter(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        if (isFormPost()) {
+            writeRequestParametersToCapture();
+        }
+        return super.getParameterMap();
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        if (isFormPost()) {
+            writeRequestParametersToCapture();
+        }
+        return super.getParameterNames();
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        if (isFormPost()) {
+            writeRequestParametersToCapture();
+        }
+        return super.getParameterValues(name);
+    }
+
+    private boolean isFormPost() {
+        String contentType = getContentType();
+        return (contentType != null && contentType.contains(FORM_CONTENT_TYPE) &&
+                HttpMethod.POST.matches(getMethod()));
+    }
+
+    private void writeRequestParametersToCapture() {
+        if (!this.capture.isEmpty()) {
+            return;
+        }
+        try {
+            String requestEncoding = getCharacterEncoding();
+            Map<String, String[]> form = super.getParameterMap();
+            for (Iterator<String> nameIterator = form.keySet().iterator(); nameIterator.hasNext(); ) {
+                String name = nameIterator.next();
+                List<String> values = Arrays.asList(form.get(name));
+                for (Iterator<String> valueIterator = values.iterator(); valueIterator.hasNext(); ) {
+                    String value = valueIterator.next();
+                    writeToCapture(URLEncoder.encode(name, requestEncoding));
+                    if (value != null) {
+                        this.capture.write('=');
+                        writeToCapture(URLEncoder.encode(value, requestEncoding));
+                        if (valueIterator.hasNext()) {
+                            this.capture.write('&');
+                        }
+                    }
+                }
+                if (nameIterator.hasNext()) {
+                    this.capture.write('&');
+                }
+            }
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException("Failed to write request parameters to captured content", ex);
+        }
+    }
+
+    private void writeToCapture(String encoded) {
+        byte[] bytes = encoded.getBytes(StandardCharsets.ISO_8859_1);
+        this.capture.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Return at most {@code maxLength} bytes of the captured body decoded with
+     * the request encoding, or {@code null} if nothing was read.
+     */
+    @Nullable
+    public String getContentAsString(int maxLength) throws UnsupportedEncodingException {
+        return this.capture.toString(getCharacterEncoding(), maxLength);
+    }
+
+    /**
+     * Return the capture buffer to its pool.
+     */
+    public void release() {
+        this.capture.release();
+    }
+
+    private class CapturingInputStream extends ServletInputStream {
+
+        private final ServletInputStream is;
+
+        CapturingInputStream(ServletInputStream is) {
+            this.is = is;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int ch = this.is.read();
+            if (ch != -1) {
+                capture.write(ch);
+            }
+            return ch;
+        }
+
+        @Override
+        public int read(byte[] b) throws IOException {
+            return read(b, 0, b.length);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = this.is.read(b, off, len);
+            if (count > 0) {
+                capture.write(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public int readLine(byte[] b, int off, int len) throws IOException {
+            int count = this.is.readLine(b, off, len);
+            if (count > 0) {
+                capture.write(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return this.is.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return this.is.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            this.is.setReadListener(readListener);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.demojsonlogging.filter;
+
+import org.springframework.lang.Nullable;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * {@link HttpServletResponse} wrapper that writes the body straight through
+ * to the response while keeping its first bytes in a pooled buffer, as a
+ * bounded replacement for
+ * {@link org.springframework.web.util.ContentCachingResponseWrapper}.
+ * <p>Whether the body is captured at all is decided by the
+ * {@link BodyCapturePolicy} on the first write, once the content type is
+ * known. Call {@link #release()} once the log message has been written.
+ */
+public class BodyCaptureResponseWrapper extends HttpServletResponseWrapper {
+
+    private final CaptureBufferPool pool;
+
+    private final BodyCapturePolicy policy;
+
+    private final BodyCapture capture;
+
+    @Nullable
+    private Boolean capturing;
+
+    private long contentLength = -1;
+
+    @Nullable
+    private ServletOutputStream outputStream;
+
+    @Nullable
+    private PrintWriter writer;
+
+    public BodyCaptureResponseWrapper(HttpServletResponse response, CaptureBufferPool pool, BodyCapturePolicy policy) {
+        super(response);
+        this.pool = pool;
+        this.policy = policy;
+        this.capture = new BodyCapture(pool);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (this.outputStream == null) {
+            this.outputStream = new CapturingOutputStream(getResponse().getOutputStream());
+        }
+        return this.outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (this.writer == null) {
+            String characterEncoding = getCharacterEncoding();
+            this.writer = new PrintWriter(new OutputStreamWriter(getOutputStream(),
+                    characterEncoding != null ? characterEncoding : WebUtils.DEFAULT_CHARACTER_ENCODING));
+        }
+        return this.writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        super.setContentLength(len);
+        this.contentLength = len;
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        super.setContentLengthLong(len);
+        this.contentLength = len;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        flushWriter();
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        this.capture.reset();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        this.capture.reset();
+        this.capturing = null;
+        this.contentLength = -1;
+    }
+
+    /**
+     * Push any characters still buffered by {@link #getWriter()} through to
+     * the response, so that they are captured as well.
+     */
+    public void flushWriter() {
+        if (this.writer != null) {
+            this.writer.flush();
+        }
+    }
+
+    /**
+     * Return at most {@code maxLength} bytes of the captured body decoded
+     * with the given charset, or {@code null} if nothing was captured.
+     */
+    @Nullable
+    public String getContentAsString(String charsetName, int maxLength) throws UnsupportedEncodingException {
+        return this.capture.toString(charsetName, maxLength);
+    }
+
+    /**
+     * Return the capture buffer to its pool.
+     */
+    public void release() {
+        this.capture.release();
+    }
+
+    private boolean isCapturing() {
+        if (this.capturing == null) {
+            this.capturing = this.policy.shouldCapture(getContentType(), this.contentLength);
+            if (!this.capturing) {
+                this.pool.recordSkip();
+            }
+        }
+        return this.capturing;
+    }
+
+    private class CapturingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream os;
+
+        CapturingOutputStream(ServletOutputStream os) {
+            this.os = os;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.os.write(b);
+            if (isCapturing()) {
+                capture.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.os.write(b, off, len);
+            if (isCapturing()) {
+                capture.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.os.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.os.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return this.os.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            this.os.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demojsonlogging.filter;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of fixed-size buffers used to capture request and response
+ * bodies for the log message.
+ * <p>The pool starts empty and keeps at most {@code capacity} released
+ * buffers. When it is empty a fresh buffer is allocated and counted as a
+ * miss, so a sustained miss rate means the capacity is too small.
+ */
+@ManagedResource(description = "Request logging body capture buffers")
+public class CaptureBufferPool {
+
+    private final int bufferSize;
+
+    private final BlockingQueue<byte[]> buffers;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong skips = new AtomicLong();
+
+    public CaptureBufferPool(int bufferSize, int capacity) {
+        Assert.isTrue(bufferSize >= 0, "'bufferSize' should be larger than or equal to 0");
+        Assert.isTrue(capacity > 0, "'capacity' should be larger than 0");
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Take a buffer from the pool, or allocate one if the pool is empty.
+     */
+    public byte[] acquire() {
+        byte[] buffer = this.buffers.poll();
+        if (buffer == null) {
+            this.misses.incrementAndGet();
+            return new byte[this.bufferSize];
+        }
+        this.hits.incrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool. It is dropped if the pool is already full.
+     */
+    public void release(byte[] buffer) {
+        if (buffer.length == this.bufferSize) {
+            this.buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Record a body that was not captured because of the {@link BodyCapturePolicy}.
+     */
+    public void recordSkip() {
+        this.skips.incrementAndGet();
+    }
+
+    @ManagedAttribute(description = "Size in bytes of each buffer")
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    @ManagedAttribute(description = "Number of buffers currently idle in the pool")
+    public int getAvailable() {
+        return this.buffers.size();
+    }
+
+    @ManagedAttribute(description = "Number of buffers served from the pool")
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    @ManagedAttribute(description = "Number of buffers allocated because the pool was empty")
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    @ManagedAttribute(description = "Number of bodies not captured because of their content type or length")
+    public long getSkips() {
+        return this.skips.get();
+    }
+}
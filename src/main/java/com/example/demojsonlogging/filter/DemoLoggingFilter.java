@@ -8,8 +8,6 @@ import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
-import org.springframework.web.util.ContentCachingRequestWrapper;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 import org.springframework.web.util.WebUtils;
 
 import javax.servlet.FilterChain;
@@ -34,8 +32,12 @@ public class DemoLoggingFilter extends OncePerRequestFilter {
 
     private static final String REQ_ATTRIBUTE_START_AT = "request-start-at";
 
+    private static final String REQ_ATTRIBUTE_REQUEST_ID = "request-id";
+
     private static final int DEFAULT_MAX_PAYLOAD_LENGTH = 50;
 
+    private static final int DEFAULT_CAPTURE_POOL_CAPACITY = 64;
+
     private boolean includeQueryString = false;
 
     private boolean includeClientInfo = false;
@@ -53,6 +55,11 @@ public class DemoLoggingFilter extends OncePerRequestFilter {
 
     private int maxPayloadLength = DEFAULT_MAX_PAYLOAD_LENGTH;
 
+    private BodyCapturePolicy bodyCapturePolicy = new BodyCapturePolicy();
+
+    @Nullable
+    private CaptureBufferPool captureBufferPool;
+
     /**
      * Set whether the query string should be included in the log message.
      * <p>Should be configured using an {@code <init-param>} for parameter name
@@ -169,6 +176,57 @@ public class DemoLoggingFilter extends OncePerRequestFilter {
         return this.maxPayloadLength;
     }
 
+    /**
+     * Set the policy deciding which request and response bodies are captured
+     * when {@link #setIncludePayload(boolean)} is set to {@code true}.
+     */
+    public void setBodyCapturePolicy(BodyCapturePolicy bodyCapturePolicy) {
+        Assert.notNull(bodyCapturePolicy, "'bodyCapturePolicy' must not be null");
+        this.bodyCapturePolicy = bodyCapturePolicy;
+    }
+
+    /**
+     * Return the configured {@link #setBodyCapturePolicy(BodyCapturePolicy) bodyCapturePolicy}.
+     */
+    protected BodyCapturePolicy getBodyCapturePolicy() {
+        return this.bodyCapturePolicy;
+    }
+
+    /**
+     * Set the pool of buffers bodies are captured into. Its buffer size should
+     * be at least the {@link #setMaxPayloadLength(int) maxPayloadLength}.
+     * <p>By default a pool of 64 buffers of {@code maxPayloadLength} bytes is
+     * created when the filter is initialized.
+     */
+    public void setCaptureBufferPool(CaptureBufferPool captureBufferPool) {
+        this.captureBufferPool = captureBufferPool;
+    }
+
+    /**
+     * Return the pool of buffers bodies are captured into.
+     */
+    @Nullable
+    protected CaptureBufferPool getCaptureBufferPool() {
+        return this.captureBufferPool;
+    }
+
+    /**
+     * The filter also runs on the async dispatch, which is where the END
+     * message is logged and the capture buffers are released for requests
+     * that started async processing.
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void initFilterBean() throws ServletException {
+        if (this.captureBufferPool == null) {
+            this.captureBufferPool = new CaptureBufferPool(getMaxPayloadLength(), DEFAULT_CAPTURE_POOL_CAPACITY);
+        }
+    }
+
     /**
      * Extracts the message payload portion of the message created by
      * {@link #createRequestMessageMap(HttpServletRequest)} when
@@ -178,17 +236,13 @@ public class DemoLoggingFilter extends OncePerRequestFilter {
      */
     @Nullable
     protected String getRequestMessagePayload(HttpServletRequest request) {
-        ContentCachingRequestWrapper wrapper =
-                WebUtils.getNativeRequest(request, ContentCachingRequestWrapper.class);
+        BodyCaptureRequestWrapper wrapper =
+                WebUtils.getNativeRequest(request, BodyCaptureRequestWrapper.class);
         if (wrapper != null) {
-            byte[] buf = wrapper.getContentAsByteArray();
-            if (buf.length > 0) {
-                int length = Math.min(buf.length, getMaxPayloadLength());
-                try {
-                    return new String(buf, 0, length, wrapper.getCharacterEncoding());
-                } catch (UnsupportedEncodingException e) {
-                    e.printStackTrace();
-                }
+            try {
+                return wrapper.getContentAsString(getMaxPayloadLength());
+            } catch (UnsupportedEncodingException e) {
+                e.printStackTrace();
             }
         }
         return null;
@@ -245,39 +299,66 @@ public class DemoLoggingFilter extends OncePerRequestFilter {
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
-        MDC.put("request_id", UUID.randomUUID().toString());
         boolean isFirstRequest = !isAsyncDispatch(request);
+        if (isFirstRequest) {
+            request.setAttribute(REQ_ATTRIBUTE_REQUEST_ID, UUID.randomUUID().toString());
+            request.setAttribute(REQ_ATTRIBUTE_START_AT, System.currentTimeMillis());
+        }
+        MDC.put("request_id", (String) request.getAttribute(REQ_ATTRIBUTE_REQUEST_ID));
         HttpServletRequest requestToUse = request;
         boolean shouldLogBefore = shouldLogBefore(requestToUse);
 
         if (isFirstRequest) {
-            if (isIncludePayload() && !(request instanceof ContentCachingRequestWrapper)) {
-                requestToUse = new ContentCachingRequestWrapper(request, getMaxPayloadLength());
+            if (isIncludePayload() && !(request instanceof BodyCaptureRequestWrapper)) {
+                if (getBodyCapturePolicy().shouldCapture(request.getContentType(), request.getContentLengthLong())) {
+                    requestToUse = new BodyCaptureRequestWrapper(request, this.captureBufferPool);
+                } else {
+                    this.captureBufferPool.recordSkip();
+                }
+            }
+            if (shouldLogBefore) {
+                beforeRequest(requestToUse);
             }
-        }
-
-        if (shouldLogBefore) {
-            beforeRequest(requestToUse);
         }
 
         HttpServletResponse responseToUse = response;
         boolean shouldLogAfter = shouldLogAfter(requestToUse, responseToUse);
-        if (shouldLogAfter && !isAsyncStarted(requestToUse)) {
-            if (isIncludePayload() && !(response instanceof ContentCachingResponseWrapper)) {
-                responseToUse = new ContentCachingResponseWrapper(response);
+        if (shouldLogAfter && isFirstRequest) {
+            if (isIncludePayload() && WebUtils.getNativeResponse(response, BodyCaptureResponseWrapper.class) == null) {
+                responseToUse = new BodyCaptureResponseWrapper(response, this.captureBufferPool, getBodyCapturePolicy());
             }
         }
         try {
-            requestToUse.setAttribute(REQ_ATTRIBUTE_START_AT, System.currentTimeMillis());
             filterChain.doFilter(requestToUse, responseToUse);
         } finally {
             if (shouldLogAfter && !isAsyncStarted(requestToUse)) {
                 afterRequest(requestToUse, responseToUse);
             }
+            if (!isAsyncStarted(requestToUse)) {
+                releaseCaptureBuffers(requestToUse, responseToUse);
+            }
             MDC.clear();
         }
     }
 
+    /**
+     * Return the body capture buffers of the given request and response to the
+     * pool. Skipped while async processing is in progress, as the wrappers are
+     * carried over to the async dispatch, which releases them instead.
+     */
+    private void releaseCaptureBuffers(HttpServletRequest request, HttpServletResponse response) {
+        BodyCaptureRequestWrapper requestWrapper =
+                WebUtils.getNativeRequest(request, BodyCaptureRequestWrapper.class);
+        if (requestWrapper != null) {
+            requestWrapper.release();
+        }
+        BodyCaptureResponseWrapper responseWrapper =
+                WebUtils.getNativeResponse(response, BodyCaptureResponseWrapper.class);
+        if (responseWrapper != null) {
+            responseWrapper.release();
+        }
+    }
+
     /**
      * Create a log message for the given request.
      * <p>If {@code includeQueryString} is {@code true}, then the inner part
@@ -339,14 +420,11 @@ public class DemoLoggingFilter extends OncePerRequestFilter {
     protected Map<String, Object> createResponseMessageMap(HttpServletRequest request, HttpServletResponse response) throws IOException {
         Map<String, Object> responseMap = new HashMap<>(createRequestMessageMap(request));
         String payload = null;
-        ContentCachingResponseWrapper wrapper =
-                WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+        BodyCaptureResponseWrapper wrapper =
+                WebUtils.getNativeResponse(response, BodyCaptureResponseWrapper.class);
         if (wrapper != null) {
-            byte[] buf = wrapper.getContentAsByteArray();
-            if (buf.length > 0) {
-                payload = new String(buf, 0, buf.length, StandardCharsets.UTF_8);
-                wrapper.copyBodyToResponse();
-            }
+            wrapper.flushWriter();
+            payload = wrapper.getContentAsString(StandardCharsets.UTF_8.name(), getMaxPayloadLength());
         }
         responseMap.put("response_code", response.getStatus());
         if (isIncludePayload()) {
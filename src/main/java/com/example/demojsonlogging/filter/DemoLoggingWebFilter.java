@@ -0,0 +1,381 @@
+package com.example.demojsonlogging.filter;
+
+import com.example.demojsonlogging.logger.ReactorMdc;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.slf4j.MDC;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.WebUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+import static net.logstash.logback.argument.StructuredArguments.entries;
+import static net.logstash.logback.argument.StructuredArguments.value;
+
+/**
+ * Reactive counterpart of {@link DemoLoggingFilter}, writing the same START
+ * and END log messages for WebFlux applications.
+ * <p>Bodies are not aggregated: the first bytes of each {@link DataBuffer} are
+ * copied into a pooled buffer as they stream through. The request ID is
+ * carried in the Reactor {@code Context} under {@link ReactorMdc#REQUEST_ID}
+ * and only put into the MDC around log calls. Session ID and user are not
+ * logged, since resolving them would add a blocking-prone lookup per request.
+ */
+@Slf4j
+public class DemoLoggingWebFilter implements WebFilter {
+
+    private static final int DEFAULT_MAX_PAYLOAD_LENGTH = 50;
+
+    private static final int DEFAULT_CAPTURE_POOL_CAPACITY = 64;
+
+    private boolean includeQueryString = false;
+
+    private boolean includeClientInfo = false;
+
+    private boolean includeHeaders = false;
+
+    private boolean includePayload = false;
+
+    private boolean shouldLogBefore = true;
+
+    private boolean shouldLogAfter = true;
+
+    @Nullable
+    private Predicate<String> headerPredicate;
+
+    private int maxPayloadLength = DEFAULT_MAX_PAYLOAD_LENGTH;
+
+    private BodyCapturePolicy bodyCapturePolicy = new BodyCapturePolicy();
+
+    @Nullable
+    private CaptureBufferPool captureBufferPool;
+
+    /**
+     * Set whether the query string should be included in the log message.
+     */
+    public void setIncludeQueryString(boolean includeQueryString) {
+        this.includeQueryString = includeQueryString;
+    }
+
+    /**
+     * Set whether the client address should be included in the log message.
+     */
+    public void setIncludeClientInfo(boolean includeClientInfo) {
+        this.includeClientInfo = includeClientInfo;
+    }
+
+    /**
+     * Set whether the request headers should be included in the log message.
+     */
+    public void setIncludeHeaders(boolean includeHeaders) {
+        this.includeHeaders = includeHeaders;
+    }
+
+    /**
+     * Set whether the request and response payloads should be included in the
+     * log message.
+     */
+    public void setIncludePayload(boolean includePayload) {
+        this.includePayload = includePayload;
+    }
+
+    /**
+     * Configure a predicate for selecting which headers should be logged if
+     * {@link #setIncludeHeaders(boolean)} is set to {@code true}.
+     * <p>By default this is not set in which case all headers are logged.
+     */
+    public void setHeaderPredicate(@Nullable Predicate<String> headerPredicate) {
+        this.headerPredicate = headerPredicate;
+    }
+
+    /**
+     * Set the maximum length of the payload body to be included in the log message.
+     * Default is 50 characters.
+     */
+    public void setMaxPayloadLength(int maxPayloadLength) {
+        Assert.isTrue(maxPayloadLength >= 0, "'maxPayloadLength' should be larger than or equal to 0");
+        this.maxPayloadLength = maxPayloadLength;
+    }
+
+    public void setShouldLogBefore(boolean logBefore) {
+        this.shouldLogBefore = logBefore;
+    }
+
+    public void setShouldLogAfter(boolean logAfter) {
+        this.shouldLogAfter = logAfter;
+    }
+
+    /**
+     * Set the policy deciding which request and response bodies are captured.
+     */
+    public void setBodyCapturePolicy(BodyCapturePolicy bodyCapturePolicy) {
+        Assert.notNull(bodyCapturePolicy, "'bodyCapturePolicy' must not be null");
+        this.bodyCapturePolicy = bodyCapturePolicy;
+    }
+
+    /**
+     * Set the pool of buffers bodies are captured into. By default a pool of
+     * 64 buffers of {@code maxPayloadLength} bytes is created on first use.
+     */
+    public void setCaptureBufferPool(CaptureBufferPool captureBufferPool) {
+        this.captureBufferPool = captureBufferPool;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String requestId = UUID.randomUUID().toString();
+        long startAt = System.currentTimeMillis();
+        CaptureBufferPool pool = getCaptureBufferPool();
+
+        ServerHttpRequest request = exchange.getRequest();
+        BodyCapture requestBody = null;
+        if (this.includePayload && this.shouldLogAfter) {
+            if (this.bodyCapturePolicy.shouldCapture(contentType(request.getHeaders()), request.getHeaders().getContentLength())) {
+                requestBody = new BodyCapture(pool);
+                request = new CapturingRequest(request, requestBody);
+            } else {
+                pool.recordSkip();
+            }
+        }
+        ServerHttpResponse response = exchange.getResponse();
+        BodyCapture responseBody = null;
+        if (this.includePayload && this.shouldLogAfter) {
+            responseBody = new BodyCapture(pool);
+            response = new CapturingResponse(response, responseBody, pool);
+        }
+
+        if (this.shouldLogBefore) {
+            Map<String, Object> requestMap = createRequestMessageMap(request, null);
+            logWithRequestId(requestId, () -> log.info("START request: {}", entries(requestMap)));
+        }
+
+        ServerWebExchange exchangeToUse = exchange.mutate().request(request).response(response).build();
+        BodyCapture capturedRequestBody = requestBody;
+        BodyCapture capturedResponseBody = responseBody;
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        return chain.filter(exchangeToUse)
+                .doOnError(error::set)
+                .doFinally(signal -> {
+                    try {
+                        if (this.shouldLogAfter) {
+                            Map<String, Object> responseMap = createResponseMessageMap(exchangeToUse,
+                                    capturedRequestBody, capturedResponseBody, error.get(), startAt);
+                            logWithRequestId(requestId, () -> log.info("END request: {}", entries(responseMap), value("type", "HTTP_REQUEST")));
+                        }
+                    } finally {
+                        if (capturedRequestBody != null) {
+                            capturedRequestBody.release();
+                        }
+                        if (capturedResponseBody != null) {
+                            capturedResponseBody.release();
+                        }
+                    }
+                })
+                .subscriberContext(context -> context.put(ReactorMdc.REQUEST_ID, requestId));
+    }
+
+    /**
+     * Create a log message for the given request, with the same fields as
+     * {@link DemoLoggingFilter#createRequestMessageMap}.
+     */
+    protected Map<String, Object> createRequestMessageMap(ServerHttpRequest request, @Nullable BodyCapture requestBody) {
+        Map<String, Object> requestMap = new HashMap<>();
+        requestMap.put("method", request.getMethodValue());
+        requestMap.put("request_uri", request.getURI().getRawPath());
+
+        if (this.includeQueryString) {
+            String queryString = request.getURI().getRawQuery();
+            if (queryString != null) {
+                requestMap.put("full_uri", requestMap.get("request_uri") + "?" + queryString);
+            }
+        }
+
+        if (this.includeClientInfo) {
+            InetSocketAddress remoteAddress = request.getRemoteAddress();
+            if (remoteAddress != null) {
+                requestMap.put("client", remoteAddress.getHostString());
+            }
+        }
+
+        if (this.includeHeaders) {
+            HttpHeaders headers = request.getHeaders();
+            if (this.headerPredicate != null) {
+                headers = new HttpHeaders();
+                headers.putAll(request.getHeaders());
+                for (String header : request.getHeaders().keySet()) {
+                    if (!this.headerPredicate.test(header)) {
+                        headers.set(header, "[redacted]");
+                    }
+                }
+            }
+            requestMap.put("headers", headers);
+        }
+
+        if (this.includePayload) {
+            if (requestBody != null) {
+                MediaType contentType = request.getHeaders().getContentType();
+                String charsetName = (contentType != null && contentType.getCharset() != null ?
+                        contentType.getCharset().name() : WebUtils.DEFAULT_CHARACTER_ENCODING);
+                String payload = toPayload(requestBody, charsetName);
+                if (payload != null) {
+                    requestMap.put("request_body", payload);
+                }
+            }
+        } else {
+            requestMap.put("request_body", "[redacted]");
+        }
+        return requestMap;
+    }
+
+    protected Map<String, Object> createResponseMessageMap(ServerWebExchange exchange, @Nullable BodyCapture requestBody,
+                                                           @Nullable BodyCapture responseBody, @Nullable Throwable error,
+                                                           long startAt) {
+        Map<String, Object> responseMap = createRequestMessageMap(exchange.getRequest(), requestBody);
+        HttpStatus status = exchange.getResponse().getStatusCode();
+        if (error != null && !exchange.getResponse().isCommitted()) {
+            status = errorStatus(error);
+        } else if (status == null) {
+            status = HttpStatus.OK;
+        }
+        responseMap.put("response_code", status.value());
+        if (this.includePayload) {
+            String payload = (responseBody != null ? toPayload(responseBody, StandardCharsets.UTF_8.name()) : null);
+            if (payload != null) {
+                responseMap.put("response_body", payload);
+            }
+        } else {
+            responseMap.put("response_body", "[redacted]");
+        }
+
+        // Request execution duration in milliseconds
+        responseMap.put("duration", System.currentTimeMillis() - startAt);
+        return responseMap;
+    }
+
+    /**
+     * Return the status an error will be rendered with. The exception
+     * handlers only run after the filter chain, so this resolves it the same
+     * way as {@code DefaultErrorAttributes} does.
+     */
+    private static HttpStatus errorStatus(Throwable error) {
+        if (error instanceof ResponseStatusException) {
+            return ((ResponseStatusException) error).getStatus();
+        }
+        ResponseStatus responseStatus = AnnotatedElementUtils.findMergedAnnotation(error.getClass(), ResponseStatus.class);
+        return (responseStatus != null ? responseStatus.code() : HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    private CaptureBufferPool getCaptureBufferPool() {
+        if (this.captureBufferPool == null) {
+            this.captureBufferPool = new CaptureBufferPool(this.maxPayloadLength, DEFAULT_CAPTURE_POOL_CAPACITY);
+        }
+        return this.captureBufferPool;
+    }
+
+    @Nullable
+    private String toPayload(BodyCapture capture, String charsetName) {
+        try {
+            return capture.toString(charsetName, this.maxPayloadLength);
+        } catch (UnsupportedEncodingException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Nullable
+    private static String contentType(HttpHeaders headers) {
+        return headers.getFirst(HttpHeaders.CONTENT_TYPE);
+    }
+
+    private static void logWithRequestId(String requestId, Runnable logCall) {
+        MDC.put(ReactorMdc.REQUEST_ID, requestId);
+        try {
+            logCall.run();
+        } finally {
+            MDC.remove(ReactorMdc.REQUEST_ID);
+        }
+    }
+
+    private static class CapturingRequest extends ServerHttpRequestDecorator {
+
+        private final BodyCapture capture;
+
+        CapturingRequest(ServerHttpRequest delegate, BodyCapture capture) {
+            super(delegate);
+            this.capture = capture;
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            return super.getBody().doOnNext(buffer -> this.capture.write(buffer.asByteBuffer()));
+        }
+    }
+
+    private class CapturingResponse extends ServerHttpResponseDecorator {
+
+        private final BodyCapture capture;
+
+        private final CaptureBufferPool pool;
+
+        @Nullable
+        private Boolean capturing;
+
+        CapturingResponse(ServerHttpResponse delegate, BodyCapture capture, CaptureBufferPool pool) {
+            super(delegate);
+            this.capture = capture;
+            this.pool = pool;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (!isCapturing()) {
+                return super.writeWith(body);
+            }
+            return super.writeWith(Flux.from(body).doOnNext(buffer -> this.capture.write(buffer.asByteBuffer())));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            if (!isCapturing()) {
+                return super.writeAndFlushWith(body);
+            }
+            return super.writeAndFlushWith(Flux.from(body).<Publisher<? extends DataBuffer>>map(publisher ->
+                    Flux.from(publisher).doOnNext(buffer -> this.capture.write(buffer.asByteBuffer()))));
+        }
+
+        private boolean isCapturing() {
+            if (this.capturing == null) {
+                HttpHeaders headers = getHeaders();
+                this.capturing = bodyCapturePolicy.shouldCapture(contentType(headers), headers.getContentLength());
+                if (!this.capturing) {
+                    this.pool.recordSkip();
+                }
+            }
+            return this.capturing;
+        }
+    }
+}
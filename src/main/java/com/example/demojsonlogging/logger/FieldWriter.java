@@ -0,0 +1,23 @@
+package com.example.demojsonlogging.logger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Writes the fields of a value into the JSON object currently being written.
+ * Implementations are generated for every class annotated with
+ * {@link LoggableFields}.
+ */
+public interface FieldWriter<T> {
+
+    /**
+     * Return the exact class this writer handles.
+     */
+    Class<T> type();
+
+    /**
+     * Write the fields of the given value, without opening or closing an object.
+     */
+    void writeFields(T value, JsonGenerator generator) throws IOException;
+}
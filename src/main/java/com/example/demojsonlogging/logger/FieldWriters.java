@@ -0,0 +1,87 @@
+package com.example.demojsonlogging.logger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import net.logstash.logback.argument.StructuredArgument;
+import net.logstash.logback.argument.StructuredArguments;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Lookup of the generated {@link FieldWriter}s, registered through
+ * {@code META-INF/services} by the annotation processor.
+ */
+public final class FieldWriters {
+
+    private static final Map<Class<?>, FieldWriter<?>> WRITERS = new HashMap<>();
+
+    static {
+        for (FieldWriter<?> writer : ServiceLoader.load(FieldWriter.class, FieldWriters.class.getClassLoader())) {
+            WRITERS.put(writer.type(), writer);
+        }
+    }
+
+    private FieldWriters() {
+    }
+
+    /**
+     * Drop-in replacement for {@link StructuredArguments#fields(Object)} that
+     * uses the generated writer of the object's class, and falls back to
+     * Jackson databind when there is none.
+     */
+    public static StructuredArgument fields(Object object) {
+        FieldWriter<Object> writer = find(object);
+        if (writer == null) {
+            return StructuredArguments.fields(object);
+        }
+        return new WrittenFieldsArgument(object, writer);
+    }
+
+    /**
+     * Write a nested object field, used by generated writers for fields that
+     * are neither primitives, strings nor enums.
+     */
+    public static void writeField(JsonGenerator generator, String name, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+            return;
+        }
+        FieldWriter<Object> writer = find(value);
+        if (writer == null) {
+            generator.writeObjectField(name, value);
+            return;
+        }
+        generator.writeObjectFieldStart(name);
+        writer.writeFields(value, generator);
+        generator.writeEndObject();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FieldWriter<Object> find(Object value) {
+        return value == null ? null : (FieldWriter<Object>) WRITERS.get(value.getClass());
+    }
+
+    private static class WrittenFieldsArgument implements StructuredArgument {
+
+        private final Object value;
+
+        private final FieldWriter<Object> writer;
+
+        WrittenFieldsArgument(Object value, FieldWriter<Object> writer) {
+            this.value = value;
+            this.writer = writer;
+        }
+
+        @Override
+        public void writeTo(JsonGenerator generator) throws IOException {
+            this.writer.writeFields(this.value, generator);
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(this.value);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 
 @Data
 @Builder
+@LoggableFields
 public class LogData {
     private Tag message_tag;
     private Object data;
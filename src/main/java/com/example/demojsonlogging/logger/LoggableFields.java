@@ -0,0 +1,20 @@
+package com.example.demojsonlogging.logger;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class whose fields are logged as structured arguments. A
+ * {@link FieldWriter} is generated for it at compile time, so that
+ * {@link FieldWriters#fields(Object)} writes it without reflection.
+ * <p>The class and its superclasses need a getter for every non-static field,
+ * as generated by Lombok's {@code @Data}.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface LoggableFields {
+}
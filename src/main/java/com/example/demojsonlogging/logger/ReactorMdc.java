@@ -0,0 +1,53 @@
+package com.example.demojsonlogging.logger;
+
+import org.slf4j.MDC;
+import reactor.core.publisher.Signal;
+import reactor.util.context.Context;
+
+import java.util.function.Consumer;
+
+/**
+ * Bridges the request ID carried in the Reactor {@code Context} to the MDC.
+ * On a reactive stack the MDC is only populated for the duration of a log
+ * call, since a request hops between threads.
+ * <pre class="code">
+ * return service.findNews()
+ *         .doOnEach(ReactorMdc.logOnNext(news -&gt; log.info("Found news: {}", news)));
+ * </pre>
+ */
+public final class ReactorMdc {
+
+    /**
+     * Key of the request ID, both in the Reactor {@code Context} and in the MDC.
+     */
+    public static final String REQUEST_ID = "request_id";
+
+    private ReactorMdc() {
+    }
+
+    /**
+     * Run the given log call with the request ID of the given context in the MDC.
+     */
+    public static void log(Context context, Runnable logCall) {
+        String requestId = context.getOrDefault(REQUEST_ID, null);
+        if (requestId == null) {
+            logCall.run();
+            return;
+        }
+        try (MDC.MDCCloseable ignored = MDC.putCloseable(REQUEST_ID, requestId)) {
+            logCall.run();
+        }
+    }
+
+    /**
+     * Return a {@code doOnEach} consumer that runs the given log call for every
+     * emitted value, with the request ID from the subscriber context in the MDC.
+     */
+    public static <T> Consumer<Signal<T>> logOnNext(Consumer<T> logCall) {
+        return signal -> {
+            if (signal.isOnNext()) {
+                log(signal.getContext(), () -> logCall.accept(signal.get()));
+            }
+        };
+    }
+}
@@ -0,0 +1,437 @@
+package com.example.demojsonlogging.logger.appender;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Bounded FIFO of byte records on disk, used by {@link TcpShippingAppender}
+ * to hold frames while the receiver is slow or down.
+ * <p>Records are appended to numbered segment files, which are deleted once
+ * fully read. Segments left over by a previous run are picked up again on
+ * open, so spilled frames survive a restart. When the head segment was only
+ * partly read, {@link #addFirst(List)} and {@link #close()} rewrite it with
+ * its unread records only, so the next run neither replays records already
+ * taken nor reorders the ones put back. A segment is truncated after its last
+ * complete record on open, and a segment that turns out to be corrupt while
+ * it is read is discarded, so one bad file cannot block the queue. Files whose
+ * name is not a segment number are left alone, see {@link #ignoredFiles()}.
+ * Not thread-safe.
+ */
+class DiskSpillQueue implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "spill-";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String REWRITE_SUFFIX = ".tmp";
+
+    private static final int RECORD_HEADER_LENGTH = 4;
+
+    private final File directory;
+
+    private final long maxBytes;
+
+    private final long segmentBytes;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    private final List<File> ignoredFiles = new ArrayList<>();
+
+    private long totalBytes;
+
+    private long size;
+
+    private long discardedBytes;
+
+    DiskSpillQueue(File directory, long maxBytes, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create spill directory " + directory);
+        }
+        load();
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    long size() {
+        return this.size;
+    }
+
+    long totalBytes() {
+        return this.totalBytes;
+    }
+
+    /**
+     * Return the number of bytes dropped so far because they did not form
+     * complete records, on open or while reading.
+     */
+    long discardedBytes() {
+        return this.discardedBytes;
+    }
+
+    /**
+     * Return the files of the directory that look like segments but whose
+     * name does not parse, found on open.
+     */
+    List<File> ignoredFiles() {
+        return this.ignoredFiles;
+    }
+
+    /**
+     * Append a record, unless that would exceed the size bound.
+     *
+     * @return {@code false} if the queue is full and the record was not added
+     */
+    boolean add(byte[] record) throws IOException {
+        if (this.totalBytes + RECORD_HEADER_LENGTH + record.length > this.maxBytes) {
+            return false;
+        }
+        Segment tail = this.segments.peekLast();
+        if (tail == null || tail.out == null || tail.length >= this.segmentBytes) {
+            if (tail != null) {
+                tail.closeOutput();
+            }
+            long index = (tail == null ? 0 : tail.index + 1);
+            tail = new Segment(segmentFile(index), index);
+            tail.openOutput();
+            this.segments.addLast(tail);
+        }
+        try {
+            tail.write(record);
+        } catch (IOException e) {
+            // never append after a partly written record, the next add starts a new segment
+            tail.abandonOutput();
+            throw e;
+        }
+        this.totalBytes += RECORD_HEADER_LENGTH + record.length;
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Put records back in front of the queue, in the given order. Used for
+     * frames that were sent but never acknowledged, so it ignores the size
+     * bound rather than lose them. If the head segment was partly read, the
+     * records replace its read part.
+     */
+    void addFirst(List<byte[]> records) throws IOException {
+        Segment head = this.segments.peekFirst();
+        if (head != null && head.readBytes > 0) {
+            rewriteHead(records);
+            return;
+        }
+        if (records.isEmpty()) {
+            return;
+        }
+        long index = (head == null ? 0 : head.index - 1);
+        Segment segment = new Segment(segmentFile(index), index);
+        segment.openOutput();
+        for (byte[] record : records) {
+            segment.write(record);
+            this.totalBytes += RECORD_HEADER_LENGTH + record.length;
+            this.size++;
+        }
+        segment.closeOutput();
+        this.segments.addFirst(segment);
+    }
+
+    /**
+     * Remove and return the oldest record, or {@code null} if the queue is empty.
+     * If the head segment cannot be read, its remaining records are discarded
+     * before the exception is thrown, and the next call continues with the
+     * following segment.
+     */
+    byte[] poll() throws IOException {
+        if (this.size == 0) {
+            return null;
+        }
+        Segment head = this.segments.peekFirst();
+        while (head.records == 0) {
+            deleteHead();
+            head = this.segments.peekFirst();
+        }
+        byte[] record;
+        try {
+            record = head.read();
+        } catch (IOException e) {
+            this.size -= head.records;
+            this.discardedBytes += head.length - head.readBytes;
+            deleteHead();
+            throw new IOException("Discarded unreadable spill segment " + head.file, e);
+        }
+        this.size--;
+        if (head.records == 0) {
+            deleteHead();
+        }
+        return record;
+    }
+
+    /**
+     * Close the segment files. A partly read head segment is rewritten with
+     * its unread records first.
+     */
+    @Override
+    public void close() throws IOException {
+        Segment head = this.segments.peekFirst();
+        if (head != null && head.readBytes > 0) {
+            rewriteHead(Collections.emptyList());
+        }
+        for (Segment segment : this.segments) {
+            segment.closeOutput();
+            segment.closeInput();
+        }
+    }
+
+    private void deleteHead() throws IOException {
+        Segment head = this.segments.removeFirst();
+        head.closeOutput();
+        head.closeInput();
+        this.totalBytes -= head.length;
+        if (!head.file.delete() && head.file.exists()) {
+            throw new IOException("Unable to delete spill segment " + head.file);
+        }
+    }
+
+    /**
+     * Replace the head segment by the given records followed by its unread
+     * records. The new content is written next to it and renamed over it, so
+     * a crash leaves either the old or the new segment.
+     */
+    private void rewriteHead(List<byte[]> records) throws IOException {
+        Segment head = this.segments.removeFirst();
+        head.closeOutput();
+        File rewrite = new File(this.directory, head.file.getName() + REWRITE_SUFFIX);
+        long length = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(rewrite)))) {
+            for (byte[] record : records) {
+                out.writeInt(record.length);
+                out.write(record);
+                length += RECORD_HEADER_LENGTH + record.length;
+            }
+            length += head.copyUnread(out);
+        }
+        head.closeInput();
+        Files.move(rewrite.toPath(), head.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Segment segment = new Segment(head.file, head.index);
+        segment.length = length;
+        segment.records = records.size() + head.records;
+        this.segments.addFirst(segment);
+        this.totalBytes += length - head.length;
+        this.size += records.size();
+    }
+
+    private void load() throws IOException {
+        File[] rewrites = this.directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX)
+                && name.endsWith(SEGMENT_SUFFIX + REWRITE_SUFFIX));
+        if (rewrites != null) {
+            // rewrites interrupted by a crash, the segment they were meant to replace is still there
+            for (File rewrite : rewrites) {
+                if (!rewrite.delete()) {
+                    throw new IOException("Unable to delete spill segment rewrite " + rewrite);
+                }
+            }
+        }
+        File[] files = this.directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        List<Segment> loaded = new ArrayList<>();
+        for (File file : files) {
+            Long index = parseIndex(file.getName());
+            if (index == null) {
+                this.ignoredFiles.add(file);
+                continue;
+            }
+            Segment segment = new Segment(file, index);
+            long validLength = segment.countRecords();
+            if (validLength < segment.length) {
+                this.discardedBytes += segment.length - validLength;
+                segment.truncate(validLength);
+            }
+            if (segment.records == 0) {
+                if (!file.delete()) {
+                    throw new IOException("Unable to delete spill segment " + file);
+                }
+                continue;
+            }
+            loaded.add(segment);
+        }
+        loaded.sort(Comparator.comparingLong(segment -> segment.index));
+        for (Segment segment : loaded) {
+            this.segments.addLast(segment);
+            this.totalBytes += segment.length;
+            this.size += segment.records;
+        }
+    }
+
+    private static Long parseIndex(String name) {
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private File segmentFile(long index) {
+        return new File(this.directory, SEGMENT_PREFIX + index + SEGMENT_SUFFIX);
+    }
+
+    private static class Segment {
+
+        private final File file;
+
+        private final long index;
+
+        private long length;
+
+        private int records;
+
+        private long readBytes;
+
+        private DataOutputStream out;
+
+        private DataInputStream in;
+
+        Segment(File file, long index) {
+            this.file = file;
+            this.index = index;
+            this.length = file.length();
+        }
+
+        void openOutput() throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file, true)));
+        }
+
+        void write(byte[] record) throws IOException {
+            this.out.writeInt(record.length);
+            this.out.write(record);
+            this.out.flush();
+            this.length += RECORD_HEADER_LENGTH + record.length;
+            this.records++;
+        }
+
+        byte[] read() throws IOException {
+            if (this.in == null) {
+                this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+            }
+            int recordLength = this.in.readInt();
+            if (recordLength < 0 || recordLength > this.length - this.readBytes - RECORD_HEADER_LENGTH) {
+                throw new IOException("Invalid record length " + recordLength + " in spill segment " + this.file);
+            }
+            byte[] record = new byte[recordLength];
+            this.in.readFully(record);
+            this.readBytes += RECORD_HEADER_LENGTH + recordLength;
+            this.records--;
+            return record;
+        }
+
+        /**
+         * Copy the records not read yet to the given stream.
+         *
+         * @return the number of bytes copied
+         */
+        long copyUnread(DataOutputStream out) throws IOException {
+            if (this.in == null) {
+                this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+            }
+            long remaining = this.length - this.readBytes;
+            byte[] buffer = new byte[8192];
+            while (remaining > 0) {
+                int count = this.in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (count < 0) {
+                    throw new EOFException("Spill segment " + this.file + " is shorter than expected");
+                }
+                out.write(buffer, 0, count);
+                remaining -= count;
+            }
+            return this.length - this.readBytes;
+        }
+
+        /**
+         * Count the complete records of a segment left by a previous run. Stops
+         * at the first record that is cut short by a crash or whose length is
+         * not plausible, as nothing after it can be trusted.
+         *
+         * @return the length of the segment up to the end of its last complete record
+         */
+        long countRecords() throws IOException {
+            long validLength = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+                while (this.length - validLength >= RECORD_HEADER_LENGTH) {
+                    int recordLength = in.readInt();
+                    if (recordLength < 0 || recordLength > this.length - validLength - RECORD_HEADER_LENGTH) {
+                        break;
+                    }
+                    skipFully(in, recordLength);
+                    validLength += RECORD_HEADER_LENGTH + recordLength;
+                    this.records++;
+                }
+            } catch (EOFException e) {
+                // the file shrank while it was read, keep what was counted
+            }
+            return validLength;
+        }
+
+        void truncate(long length) throws IOException {
+            try (RandomAccessFile file = new RandomAccessFile(this.file, "rw")) {
+                file.setLength(length);
+            }
+            this.length = length;
+        }
+
+        void closeOutput() throws IOException {
+            if (this.out != null) {
+                this.out.close();
+                this.out = null;
+            }
+        }
+
+        void abandonOutput() {
+            try {
+                closeOutput();
+            } catch (IOException e) {
+                this.out = null;
+            }
+        }
+
+        void closeInput() throws IOException {
+            if (this.in != null) {
+                this.in.close();
+                this.in = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demojsonlogging.logger.appender;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import org.slf4j.Marker;
+
+import java.util.Map;
+
+/**
+ * Wraps a logging event together with the bytes produced by each
+ * {@link FanOutEncoding}, so that downstream appenders can write them
+ * without encoding the event again.
+ */
+public class EncodedLoggingEvent implements ILoggingEvent {
+
+    private final ILoggingEvent delegate;
+
+    private final String[] encodingNames;
+
+    private final byte[][] encoded;
+
+    /**
+     * @param encodingNames the names of the encodings, shared by all events
+     * @param encoded the bytes of each encoding, by the index of its name,
+     * {@code null} for an encoding that was skipped
+     */
+    public EncodedLoggingEvent(ILoggingEvent delegate, String[] encodingNames, byte[][] encoded) {
+        this.delegate = delegate;
+        this.encodingNames = encodingNames;
+        this.encoded = encoded;
+    }
+
+    /**
+     * Return the bytes produced by the encoding with the given name, or
+     * {@code null} if no such encoding is configured or it was skipped.
+     */
+    public byte[] getEncoded(String encodingName) {
+        for (int i = 0; i < this.encodingNames.length; i++) {
+            if (this.encodingNames[i].equals(encodingName)) {
+                return this.encoded[i];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getThreadName() {
+        return this.delegate.getThreadName();
+    }
+
+    @Override
+    public Level getLevel() {
+        return this.delegate.getLevel();
+    }
+
+    @Override
+    public String getMessage() {
+        return this.delegate.getMessage();
+    }
+
+    @Override
+    public Object[] getArgumentArray() {
+        return this.delegate.getArgumentArray();
+    }
+
+    @Override
+    public String getFormattedMessage() {
+        return this.delegate.getFormattedMessage();
+    }
+
+    @Override
+    public String getLoggerName() {
+        return this.delegate.getLoggerName();
+    }
+
+    @Override
+    public LoggerContextVO getLoggerContextVO() {
+        return this.delegate.getLoggerContextVO();
+    }
+
+    @Override
+    public IThrowableProxy getThrowableProxy() {
+        return this.delegate.getThrowableProxy();
+    }
+
+    @Override
+    public StackTraceElement[] getCallerData() {
+        return this.delegate.getCallerData();
+    }
+
+    @Override
+    public boolean hasCallerData() {
+        return this.delegate.hasCallerData();
+    }
+
+    @Override
+    public Marker getMarker() {
+        return this.delegate.getMarker();
+    }
+
+    @Override
+    public Map<String, String> getMDCPropertyMap() {
+        return this.delegate.getMDCPropertyMap();
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public Map<String, String> getMdc() {
+        return this.delegate.getMdc();
+    }
+
+    @Override
+    public long getTimeStamp() {
+        return this.delegate.getTimeStamp();
+    }
+
+    @Override
+    public void prepareForDeferredProcessing() {
+        this.delegate.prepareForDeferredProcessing();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.demojsonlogging.logger.appender;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.Encoder;
+
+/**
+ * Appender that writes events through an encoder, so that a
+ * {@link FanOutAppender} can tell which encoding it needs.
+ * {@link ch.qos.logback.core.OutputStreamAppender} subclasses are recognised
+ * without it.
+ */
+public interface EncodingSink {
+
+    Encoder<ILoggingEvent> getEncoder();
+}
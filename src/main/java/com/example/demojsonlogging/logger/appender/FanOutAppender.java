@@ -0,0 +1,305 @@
+package com.example.demojsonlogging.logger.appender;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.filter.LevelFilter;
+import ch.qos.logback.classic.filter.ThresholdFilter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import ch.qos.logback.core.spi.FilterReply;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Appender that runs each configured {@link FanOutEncoding} exactly once per
+ * event, on the calling thread, and hands the resulting bytes to every
+ * attached appender.
+ * <p>Attached appenders (sinks) write the shared bytes through a
+ * {@link PreEncodedEncoder} and keep their own filters, so each sink can have
+ * its own level threshold. Wrapping a sink in an
+ * {@link ch.qos.logback.classic.AsyncAppender} gives it its own queue and
+ * worker thread, so a slow sink cannot block the others.
+ * <p>An encoding is skipped when none of the sinks using it would accept the
+ * event's level, judged once from the level filters of the sink and of every
+ * appender wrapping it; other filters only run when the sink appends. Sinks
+ * that do not expose a {@link PreEncodedEncoder}, through
+ * {@link OutputStreamAppender} or {@link EncodingSink}, are assumed to need
+ * every encoding. The sinks are inspected on the first event after an
+ * appender is attached or detached, so their filters must be set up by then.
+ * <p>Encodings are declared with {@code <encoding name="...">} elements,
+ * bound by {@link FanOutEncodingAction}.
+ */
+public class FanOutAppender extends UnsynchronizedAppenderBase<ILoggingEvent> implements AppenderAttachable<ILoggingEvent> {
+
+    private final AppenderAttachableImpl<ILoggingEvent> aai = new AppenderAttachableImpl<>();
+
+    private final List<FanOutEncoding> encodings = new ArrayList<>();
+
+    private volatile Plan plan;
+
+    private Encoder<ILoggingEvent> pendingEncoder;
+
+    public void addEncoding(FanOutEncoding encoding) {
+        this.encodings.add(encoding);
+        this.plan = null;
+    }
+
+    public List<FanOutEncoding> getEncodings() {
+        return Collections.unmodifiableList(this.encodings);
+    }
+
+    /**
+     * Set the encoder of the {@code <encoding>} element being configured, see
+     * {@link FanOutEncodingAction}.
+     */
+    public void setEncoder(Encoder<ILoggingEvent> encoder) {
+        this.pendingEncoder = encoder;
+    }
+
+    Encoder<ILoggingEvent> takeEncoder() {
+        Encoder<ILoggingEvent> encoder = this.pendingEncoder;
+        this.pendingEncoder = null;
+        return encoder;
+    }
+
+    @Override
+    public void start() {
+        if (this.pendingEncoder != null) {
+            addError("The encoder of the appender named [" + this.name + "] must be nested in an <encoding> element.");
+            return;
+        }
+        if (this.encodings.isEmpty()) {
+            addError("No encoding set for the appender named [" + this.name + "].");
+            return;
+        }
+        for (FanOutEncoding encoding : this.encodings) {
+            if (encoding.getName() == null || encoding.getEncoder() == null) {
+                addError("Every encoding of the appender named [" + this.name + "] needs a name and an encoder.");
+                return;
+            }
+            if (!encoding.getEncoder().isStarted()) {
+                encoding.getEncoder().start();
+            }
+        }
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        this.aai.detachAndStopAllAppenders();
+        this.plan = null;
+        for (FanOutEncoding encoding : this.encodings) {
+            encoding.getEncoder().stop();
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        Plan plan = plan();
+        boolean[] needed = plan.needed[levelIndex(event.getLevel())];
+        if (needed == null) {
+            return;
+        }
+        byte[][] encoded = new byte[plan.names.length][];
+        for (int i = 0; i < plan.names.length; i++) {
+            if (!needed[i]) {
+                continue;
+            }
+            try {
+                encoded[i] = this.encodings.get(i).getEncoder().encode(event);
+            } catch (RuntimeException e) {
+                addError("Failed to encode event with [" + plan.names[i] + "]", e);
+            }
+        }
+        this.aai.appendLoopOnAppenders(new EncodedLoggingEvent(event, plan.names, encoded));
+    }
+
+    private Plan plan() {
+        Plan plan = this.plan;
+        if (plan == null) {
+            List<Sink> sinks = new ArrayList<>();
+            for (Iterator<Appender<ILoggingEvent>> it = this.aai.iteratorForAppenders(); it.hasNext(); ) {
+                collectSinks(it.next(), new ArrayList<>(), sinks);
+            }
+            plan = new Plan(this.encodings, sinks);
+            this.plan = plan;
+        }
+        return plan;
+    }
+
+    private static void collectSinks(Appender<ILoggingEvent> appender, List<Appender<ILoggingEvent>> path, List<Sink> sinks) {
+        List<Appender<ILoggingEvent>> appenderPath = new ArrayList<>(path);
+        appenderPath.add(appender);
+        if (appender instanceof AppenderAttachable) {
+            @SuppressWarnings("unchecked")
+            Iterator<Appender<ILoggingEvent>> it = ((AppenderAttachable<ILoggingEvent>) appender).iteratorForAppenders();
+            while (it.hasNext()) {
+                collectSinks(it.next(), appenderPath, sinks);
+            }
+            return;
+        }
+        sinks.add(new Sink(appenderPath, encodingOf(appender)));
+    }
+
+    private static String encodingOf(Appender<ILoggingEvent> appender) {
+        Encoder<ILoggingEvent> encoder = null;
+        if (appender instanceof OutputStreamAppender) {
+            encoder = ((OutputStreamAppender<ILoggingEvent>) appender).getEncoder();
+        } else if (appender instanceof EncodingSink) {
+            encoder = ((EncodingSink) appender).getEncoder();
+        }
+        return encoder instanceof PreEncodedEncoder ? ((PreEncodedEncoder) encoder).getEncoding() : null;
+    }
+
+    private static int levelIndex(Level level) {
+        switch (level.levelInt) {
+            case Level.TRACE_INT:
+                return 0;
+            case Level.DEBUG_INT:
+                return 1;
+            case Level.INFO_INT:
+                return 2;
+            case Level.WARN_INT:
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    @Override
+    public void addAppender(Appender<ILoggingEvent> newAppender) {
+        addInfo("Attaching appender named [" + newAppender.getName() + "] to FanOutAppender.");
+        this.aai.addAppender(newAppender);
+        this.plan = null;
+    }
+
+    @Override
+    public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+        return this.aai.iteratorForAppenders();
+    }
+
+    @Override
+    public Appender<ILoggingEvent> getAppender(String name) {
+        return this.aai.getAppender(name);
+    }
+
+    @Override
+    public boolean isAttached(Appender<ILoggingEvent> appender) {
+        return this.aai.isAttached(appender);
+    }
+
+    @Override
+    public void detachAndStopAllAppenders() {
+        this.aai.detachAndStopAllAppenders();
+        this.plan = null;
+    }
+
+    @Override
+    public boolean detachAppender(Appender<ILoggingEvent> appender) {
+        this.plan = null;
+        return this.aai.detachAppender(appender);
+    }
+
+    @Override
+    public boolean detachAppender(String name) {
+        this.plan = null;
+        return this.aai.detachAppender(name);
+    }
+
+    /**
+     * Which encodings are needed for events of each level, worked out once
+     * from the sinks rather than per event.
+     */
+    private static class Plan {
+
+        private static final Level[] LEVELS = {Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR};
+
+        private final String[] names;
+
+        /**
+         * The encodings needed for each level, by {@link #levelIndex}, or
+         * {@code null} if no sink would accept events of that level.
+         */
+        private final boolean[][] needed = new boolean[LEVELS.length][];
+
+        Plan(List<FanOutEncoding> encodings, List<Sink> sinks) {
+            this.names = new String[encodings.size()];
+            for (int i = 0; i < this.names.length; i++) {
+                this.names[i] = encodings.get(i).getName();
+            }
+            for (int level = 0; level < LEVELS.length; level++) {
+                LoggingEvent probe = new LoggingEvent();
+                probe.setLevel(LEVELS[level]);
+                for (Sink sink : sinks) {
+                    if (!sink.mayAccept(probe)) {
+                        continue;
+                    }
+                    if (this.needed[level] == null) {
+                        this.needed[level] = new boolean[this.names.length];
+                    }
+                    for (int i = 0; i < this.names.length; i++) {
+                        if (sink.encoding == null || sink.encoding.equals(this.names[i])) {
+                            this.needed[level][i] = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * An appender that writes the bytes, with the appenders wrapping it.
+     */
+    private static class Sink {
+
+        private final List<Appender<ILoggingEvent>> path;
+
+        private final String encoding;
+
+        Sink(List<Appender<ILoggingEvent>> path, String encoding) {
+            this.path = path;
+            this.encoding = encoding;
+        }
+
+        /**
+         * Tell whether the sink may accept an event of the probe's level.
+         * Only level filters are asked, as they are stateless and depend on
+         * nothing else; the first other filter in a chain is assumed to let
+         * the event through, and decides for real when the sink appends.
+         */
+        boolean mayAccept(ILoggingEvent probe) {
+            for (Appender<ILoggingEvent> appender : this.path) {
+                if (!mayAccept(appender, probe)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean mayAccept(Appender<ILoggingEvent> appender, ILoggingEvent probe) {
+            for (Filter<ILoggingEvent> filter : appender.getCopyOfAttachedFiltersList()) {
+                if (!(filter instanceof ThresholdFilter) && !(filter instanceof LevelFilter)) {
+                    return true;
+                }
+                FilterReply reply = filter.decide(probe);
+                if (reply == FilterReply.DENY) {
+                    return false;
+                }
+                if (reply == FilterReply.ACCEPT) {
+                    return true;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.demojsonlogging.logger.appender;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.Encoder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A named encoder configured on a {@link FanOutAppender}. Each encoding runs
+ * once per event and its bytes are shared by every sink that references it
+ * through a {@link PreEncodedEncoder}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FanOutEncoding {
+    private String name;
+    private Encoder<ILoggingEvent> encoder;
+}
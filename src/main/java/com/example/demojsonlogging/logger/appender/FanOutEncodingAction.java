@@ -0,0 +1,60 @@
+package com.example.demojsonlogging.logger.appender;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.joran.action.Action;
+import ch.qos.logback.core.joran.spi.InterpretationContext;
+import ch.qos.logback.core.util.OptionHelper;
+import org.xml.sax.Attributes;
+
+/**
+ * Joran action for the {@code <encoding name="...">} element of a
+ * {@link FanOutAppender}. Register it before the appender is declared:
+ * <pre>
+ * &lt;newRule pattern="*&#47;appender/encoding"
+ *          actionClass="com.example.demojsonlogging.logger.appender.FanOutEncodingAction"/&gt;
+ * </pre>
+ * <p>The appender stays on top of the object stack while the nested
+ * {@code <encoder>} is configured, so encoders that expect their parent to be
+ * an appender (such as {@code PatternLayoutEncoder}) are given the
+ * {@link FanOutAppender} rather than the encoding.
+ */
+public class FanOutEncodingAction extends Action {
+
+    private FanOutAppender appender;
+
+    private String encodingName;
+
+    @Override
+    public void begin(InterpretationContext ic, String name, Attributes attributes) {
+        this.appender = null;
+        Object parent = ic.peekObject();
+        if (!(parent instanceof FanOutAppender)) {
+            addError("<" + name + "> is only supported inside a FanOutAppender, near " + getLineColStr(ic));
+            return;
+        }
+        this.encodingName = ic.subst(attributes.getValue(NAME_ATTRIBUTE));
+        if (OptionHelper.isEmpty(this.encodingName)) {
+            addError("Missing name for <" + name + "> element, near " + getLineColStr(ic));
+            return;
+        }
+        this.appender = (FanOutAppender) parent;
+        // drop anything left over from a previous element
+        this.appender.takeEncoder();
+    }
+
+    @Override
+    public void end(InterpretationContext ic, String name) {
+        if (this.appender == null) {
+            return;
+        }
+        Encoder<ILoggingEvent> encoder = this.appender.takeEncoder();
+        if (encoder == null) {
+            addError("No encoder set for the encoding named [" + this.encodingName + "].");
+        } else {
+            addInfo("Adding encoding named [" + this.encodingName + "] to FanOutAppender.");
+            this.appender.addEncoding(new FanOutEncoding(this.encodingName, encoder));
+        }
+        this.appender = null;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.demojsonlogging.logger.appender;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Wire format of {@link TcpShippingAppender}.
+ * <p>The sender writes frames of {@code long sequence, int length, byte[length] body},
+ * where the body is {@code int eventCount} followed by the deflated
+ * concatenation of the encoded events (newline-delimited JSON with the
+ * logstash encoder). Sequence numbers start at 1 on every connection.
+ * The receiver answers with {@code long sequence} acknowledgements, each one
+ * confirming every frame up to and including that sequence.
+ */
+public final class LogFrames {
+
+    private LogFrames() {
+    }
+
+    /**
+     * Build a frame body from a batch of encoded events.
+     */
+    public static byte[] encodeBody(List<byte[]> events, Deflater deflater) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(events.size() >>> 24);
+        out.write(events.size() >>> 16);
+        out.write(events.size() >>> 8);
+        out.write(events.size());
+        byte[] chunk = new byte[8192];
+        deflater.reset();
+        for (byte[] event : events) {
+            deflater.setInput(event);
+            while (!deflater.needsInput()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Return the number of events in a frame body.
+     */
+    public static int eventCount(byte[] body) {
+        return ByteBuffer.wrap(body).getInt();
+    }
+
+    /**
+     * Inflate the events of a frame body back into their concatenated encoding.
+     */
+    public static byte[] decodeEvents(byte[] body) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(body, 4, body.length - 4);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length * 4);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(chunk);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated frame body");
+                }
+                out.write(chunk, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt frame body", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Write a frame with the given sequence and body.
+     */
+    public static void writeFrame(DataOutputStream out, long sequence, byte[] body) throws IOException {
+        out.writeLong(sequence);
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    /**
+     * Read the body of the next frame, whose sequence has already been read.
+     */
+    public static byte[] readBody(DataInputStream in) throws IOException {
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return body;
+    }
+}
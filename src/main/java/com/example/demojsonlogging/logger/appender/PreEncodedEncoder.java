@@ -0,0 +1,61 @@
+package com.example.demojsonlogging.logger.appender;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.EncoderBase;
+
+/**
+ * Encoder for appenders attached to a {@link FanOutAppender}. Instead of
+ * formatting the event it returns the bytes already produced by the
+ * {@link FanOutEncoding} named by {@link #setEncoding(String)}.
+ */
+public class PreEncodedEncoder extends EncoderBase<ILoggingEvent> {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private String encoding;
+
+    private boolean warnedUnencoded = false;
+
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    public String getEncoding() {
+        return this.encoding;
+    }
+
+    @Override
+    public void start() {
+        if (this.encoding == null) {
+            addError("No encoding name set for the encoder.");
+            return;
+        }
+        super.start();
+    }
+
+    @Override
+    public byte[] headerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        byte[] bytes = null;
+        if (event instanceof EncodedLoggingEvent) {
+            bytes = ((EncodedLoggingEvent) event).getEncoded(this.encoding);
+        }
+        if (bytes == null) {
+            if (!this.warnedUnencoded) {
+                this.warnedUnencoded = true;
+                addWarn("Event was not pre-encoded with [" + this.encoding + "], is the appender attached to a FanOutAppender?");
+            }
+            return EMPTY;
+        }
+        return bytes;
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+}
@@ -0,0 +1,626 @@
+package com.example.demojsonlogging.logger.appender;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Appender that ships encoded events to a log aggregator over a persistent
+ * TCP connection, in the format described by {@link LogFrames}.
+ * <p>Events are queued by the calling thread and batched by a single worker
+ * into compressed frames. Up to {@code maxInFlightFrames} frames are sent
+ * without waiting for their acknowledgement. Frames that cannot be sent
+ * because the receiver is down or the window is full are spilled to a
+ * bounded {@link DiskSpillQueue} and replayed in order once it catches up.
+ * Unacknowledged frames are re-sent after a reconnect, so delivery is
+ * at-least-once. A watchdog closes the connection when a write has not
+ * completed within {@code writeTimeoutMillis}, so a receiver that stops
+ * reading cannot stall the worker; new frames are spilled until it is back.
+ * Likewise the worker reconnects when the oldest unacknowledged frame has
+ * waited more than {@code ackTimeoutMillis}, so a receiver that reads but no
+ * longer acknowledges gets the frames again instead of filling the spill.
+ * An I/O error of the spill queue is reported and the frames involved are
+ * dropped, but the worker keeps shipping.
+ * <p>Meant to be attached to a {@link FanOutAppender} with a
+ * {@link PreEncodedEncoder}; it never blocks the calling thread, and drops
+ * events only when its in-memory queue is full.
+ */
+public class TcpShippingAppender extends UnsynchronizedAppenderBase<ILoggingEvent> implements EncodingSink {
+
+    private static final int ACK_LENGTH = 8;
+
+    private Encoder<ILoggingEvent> encoder;
+
+    private String remoteHost;
+
+    private int port;
+
+    private int queueSize = 8192;
+
+    private int batchSize = 512;
+
+    private long flushIntervalMillis = 200;
+
+    private int maxInFlightFrames = 16;
+
+    private int compressionLevel = Deflater.BEST_SPEED;
+
+    private int connectTimeoutMillis = 5000;
+
+    private long writeTimeoutMillis = 10000;
+
+    private long ackTimeoutMillis = 30000;
+
+    private long reconnectionDelayMillis = 1000;
+
+    private long shutdownTimeoutMillis = 5000;
+
+    private String spillDirectory = "logs/spill";
+
+    private long maxSpillBytes = 512L * 1024 * 1024;
+
+    private long spillSegmentBytes = 16L * 1024 * 1024;
+
+    private final AtomicLong sentFrames = new AtomicLong();
+
+    private final AtomicLong acknowledgedFrames = new AtomicLong();
+
+    private final AtomicLong spilledFrames = new AtomicLong();
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    private BlockingQueue<byte[]> events;
+
+    private DiskSpillQueue spill;
+
+    private Thread worker;
+
+    private ScheduledExecutorService watchdog;
+
+    private volatile boolean running;
+
+    // deadline of the write in progress and its socket, checked by the watchdog
+
+    private volatile long writeDeadline;
+
+    private volatile Socket writingSocket;
+
+    // state below is only touched by the worker thread
+
+    private final Deque<Frame> unacknowledged = new ArrayDeque<>();
+
+    private final byte[] ackBuffer = new byte[ACK_LENGTH];
+
+    private int ackBufferCount;
+
+    private Socket socket;
+
+    private DataOutputStream out;
+
+    private InputStream in;
+
+    private long nextSequence;
+
+    private long nextConnectAttempt;
+
+    private boolean connectionFailureReported;
+
+    @Override
+    public void start() {
+        if (this.encoder == null) {
+            addError("No encoder set for the appender named [" + this.name + "].");
+            return;
+        }
+        if (this.remoteHost == null || this.port <= 0) {
+            addError("No remoteHost or port set for the appender named [" + this.name + "].");
+            return;
+        }
+        try {
+            this.spill = new DiskSpillQueue(new File(this.spillDirectory), this.maxSpillBytes, this.spillSegmentBytes);
+        } catch (IOException e) {
+            addError("Unable to open spill directory [" + this.spillDirectory + "]", e);
+            return;
+        }
+        if (this.spill.discardedBytes() > 0) {
+            addWarn("Dropped " + this.spill.discardedBytes() + " bytes of incomplete frames from the spill directory ["
+                    + this.spillDirectory + "].");
+        }
+        for (File ignored : this.spill.ignoredFiles()) {
+            addWarn("Ignoring [" + ignored + "], its name is not a spill segment number.");
+        }
+        if (!this.spill.isEmpty()) {
+            addInfo(this.spill.size() + " frames spilled by a previous run will be replayed.");
+        }
+        this.events = new ArrayBlockingQueue<>(this.queueSize);
+        this.worker = new Thread(this::ship, "TcpShippingAppender-" + this.name);
+        this.worker.setDaemon(true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TcpShippingAppender-" + this.name + "-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkInterval = Math.max(10, this.writeTimeoutMillis / 4);
+        this.watchdog.scheduleWithFixedDelay(this::abortStalledWrite, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+        this.running = true;
+        super.start();
+        this.worker.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        this.running = false;
+        try {
+            this.worker.join(this.shutdownTimeoutMillis + this.flushIntervalMillis + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.worker.isAlive()) {
+            addWarn("Worker of the appender named [" + this.name + "] did not stop in time.");
+        }
+        this.watchdog.shutdownNow();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        byte[] encoded;
+        try {
+            encoded = this.encoder.encode(event);
+        } catch (RuntimeException e) {
+            addError("Failed to encode event", e);
+            return;
+        }
+        if (encoded.length == 0) {
+            return;
+        }
+        if (!this.events.offer(encoded)) {
+            if (this.droppedEvents.getAndIncrement() == 0) {
+                addWarn("Queue of the appender named [" + this.name + "] is full, dropping events.");
+            }
+        }
+    }
+
+    private void ship() {
+        Deflater deflater = new Deflater(this.compressionLevel);
+        List<byte[]> batch = new ArrayList<>(this.batchSize);
+        try {
+            while (this.running) {
+                try {
+                    connectIfNeeded();
+                    readAcknowledgements(false);
+                    checkAcknowledgementTimeout();
+                    sendSpilled();
+                    collectBatch(batch);
+                    if (!batch.isEmpty()) {
+                        byte[] body = LogFrames.encodeBody(batch, deflater);
+                        batch.clear();
+                        enqueue(body);
+                    }
+                } catch (IOException e) {
+                    addError("Spill queue of the appender named [" + this.name + "] failed.", e);
+                    // do not spin on a disk that keeps failing
+                    sleepQuietly(this.reconnectionDelayMillis);
+                }
+            }
+            drain(batch, deflater);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            addError("Spill queue of the appender named [" + this.name + "] failed while stopping.", e);
+        } finally {
+            deflater.end();
+            disconnect();
+            try {
+                this.spill.close();
+            } catch (IOException e) {
+                addWarn("Unable to close spill queue", e);
+            }
+        }
+    }
+
+    /**
+     * Flush queued events and wait for outstanding frames on shutdown. Frames
+     * still unacknowledged at the deadline go back in front of the spill
+     * queue, to be replayed by the next run. Without a connection, or once it
+     * is lost, there is nothing to wait for: one connection attempt is made,
+     * and if it fails everything is left on disk straight away.
+     */
+    private void drain(List<byte[]> batch, Deflater deflater) throws IOException {
+        while (this.events.drainTo(batch, this.batchSize) > 0) {
+            enqueue(LogFrames.encodeBody(batch, deflater));
+            batch.clear();
+        }
+        if (this.socket == null) {
+            this.nextConnectAttempt = 0;
+        }
+        long deadline = System.currentTimeMillis() + this.shutdownTimeoutMillis;
+        while ((!this.unacknowledged.isEmpty() || !this.spill.isEmpty()) && System.currentTimeMillis() < deadline) {
+            connectIfNeeded();
+            if (this.socket == null) {
+                break;
+            }
+            sendSpilled();
+            readAcknowledgements(true);
+            checkAcknowledgementTimeout();
+        }
+        if (!this.unacknowledged.isEmpty()) {
+            List<byte[]> bodies = new ArrayList<>(this.unacknowledged.size());
+            for (Frame frame : this.unacknowledged) {
+                bodies.add(frame.body);
+            }
+            this.spill.addFirst(bodies);
+            this.unacknowledged.clear();
+        }
+        if (!this.spill.isEmpty()) {
+            addWarn(this.spill.size() + " frames left in the spill queue of the appender named [" + this.name + "].");
+        }
+    }
+
+    private void collectBatch(List<byte[]> batch) throws InterruptedException {
+        byte[] first = this.events.poll(this.flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.currentTimeMillis() + this.flushIntervalMillis;
+        while (batch.size() < this.batchSize) {
+            if (this.events.drainTo(batch, this.batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            byte[] next = (remaining > 0 ? this.events.poll(remaining, TimeUnit.MILLISECONDS) : null);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void enqueue(byte[] body) throws IOException {
+        if (this.socket != null && this.spill.isEmpty() && this.unacknowledged.size() < this.maxInFlightFrames) {
+            send(new Frame(body));
+            return;
+        }
+        boolean spilled;
+        try {
+            spilled = this.spill.add(body);
+        } catch (IOException e) {
+            this.droppedEvents.addAndGet(LogFrames.eventCount(body));
+            throw e;
+        }
+        if (spilled) {
+            this.spilledFrames.incrementAndGet();
+        } else {
+            this.droppedEvents.addAndGet(LogFrames.eventCount(body));
+            addWarn("Spill queue of the appender named [" + this.name + "] is full, dropping a frame.");
+        }
+    }
+
+    private void sendSpilled() throws IOException {
+        while (this.socket != null && !this.spill.isEmpty() && this.unacknowledged.size() < this.maxInFlightFrames) {
+            send(new Frame(this.spill.poll()));
+        }
+    }
+
+    private void send(Frame frame) {
+        this.unacknowledged.addLast(frame);
+        frame.sequence = ++this.nextSequence;
+        frame.sentAt = System.currentTimeMillis();
+        this.writingSocket = this.socket;
+        this.writeDeadline = System.currentTimeMillis() + this.writeTimeoutMillis;
+        try {
+            LogFrames.writeFrame(this.out, frame.sequence, frame.body);
+            this.out.flush();
+            this.sentFrames.incrementAndGet();
+        } catch (IOException e) {
+            addWarn("Connection to [" + this.remoteHost + ":" + this.port + "] lost", e);
+            disconnect();
+        } finally {
+            this.writeDeadline = 0;
+            this.writingSocket = null;
+        }
+    }
+
+    /**
+     * Run by the watchdog: close the socket of a write that is past its
+     * deadline, which makes the blocked write fail on the worker thread.
+     */
+    private void abortStalledWrite() {
+        long deadline = this.writeDeadline;
+        Socket socket = this.writingSocket;
+        if (deadline != 0 && socket != null && System.currentTimeMillis() > deadline) {
+            addWarn("Write to [" + this.remoteHost + ":" + this.port + "] stalled for more than "
+                    + this.writeTimeoutMillis + " ms, disconnecting.");
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Read the acknowledgements received so far. Unless {@code wait} is set,
+     * returns straight away when nothing is available.
+     */
+    private void readAcknowledgements(boolean wait) {
+        if (this.socket == null) {
+            return;
+        }
+        try {
+            while (wait || this.in.available() > 0) {
+                int count = this.in.read(this.ackBuffer, this.ackBufferCount, ACK_LENGTH - this.ackBufferCount);
+                if (count < 0) {
+                    throw new IOException("Connection closed by receiver");
+                }
+                this.ackBufferCount += count;
+                if (this.ackBufferCount == ACK_LENGTH) {
+                    this.ackBufferCount = 0;
+                    acknowledge(readLong(this.ackBuffer));
+                    wait = false;
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            // nothing acknowledged within the flush interval
+        } catch (IOException e) {
+            addWarn("Connection to [" + this.remoteHost + ":" + this.port + "] lost", e);
+            disconnect();
+        }
+    }
+
+    /**
+     * Drop the connection when the oldest frame has not been acknowledged in
+     * time, so that the frames are sent again on a new one.
+     */
+    private void checkAcknowledgementTimeout() {
+        Frame oldest = this.unacknowledged.peekFirst();
+        if (this.socket != null && oldest != null && System.currentTimeMillis() - oldest.sentAt > this.ackTimeoutMillis) {
+            addWarn("No acknowledgement from [" + this.remoteHost + ":" + this.port + "] for more than "
+                    + this.ackTimeoutMillis + " ms, reconnecting.");
+            disconnect();
+        }
+    }
+
+    private void acknowledge(long sequence) {
+        while (!this.unacknowledged.isEmpty() && this.unacknowledged.peekFirst().sequence <= sequence) {
+            this.unacknowledged.removeFirst();
+            this.acknowledgedFrames.incrementAndGet();
+        }
+    }
+
+    private void connectIfNeeded() {
+        if (this.socket != null || System.currentTimeMillis() < this.nextConnectAttempt) {
+            return;
+        }
+        Socket candidate = new Socket();
+        try {
+            candidate.setKeepAlive(true);
+            candidate.setSoTimeout((int) this.flushIntervalMillis);
+            candidate.connect(new InetSocketAddress(this.remoteHost, this.port), this.connectTimeoutMillis);
+            this.socket = candidate;
+            this.out = new DataOutputStream(new BufferedOutputStream(candidate.getOutputStream()));
+            this.in = candidate.getInputStream();
+        } catch (IOException e) {
+            closeQuietly(candidate);
+            this.nextConnectAttempt = System.currentTimeMillis() + this.reconnectionDelayMillis;
+            if (!this.connectionFailureReported) {
+                this.connectionFailureReported = true;
+                addWarn("Unable to connect to [" + this.remoteHost + ":" + this.port + "], spilling to disk until it is back", e);
+            }
+            return;
+        }
+        addInfo("Connected to [" + this.remoteHost + ":" + this.port + "]");
+        this.connectionFailureReported = false;
+
+        // frames sent on the previous connection are older than anything spilled
+        List<Frame> resend = new ArrayList<>(this.unacknowledged);
+        this.unacknowledged.clear();
+        for (Frame frame : resend) {
+            if (this.socket == null) {
+                this.unacknowledged.add(frame);
+            } else {
+                send(frame);
+            }
+        }
+    }
+
+    private void disconnect() {
+        if (this.socket != null) {
+            closeQuietly(this.socket);
+        }
+        this.socket = null;
+        this.out = null;
+        this.in = null;
+        this.nextSequence = 0;
+        this.ackBufferCount = 0;
+        this.nextConnectAttempt = System.currentTimeMillis() + this.reconnectionDelayMillis;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long readLong(byte[] b) {
+        long value = 0;
+        for (int i = 0; i < ACK_LENGTH; i++) {
+            value = (value << 8) | (b[i] & 0xff);
+        }
+        return value;
+    }
+
+    @Override
+    public Encoder<ILoggingEvent> getEncoder() {
+        return this.encoder;
+    }
+
+    public void setEncoder(Encoder<ILoggingEvent> encoder) {
+        this.encoder = encoder;
+    }
+
+    public String getRemoteHost() {
+        return this.remoteHost;
+    }
+
+    public void setRemoteHost(String remoteHost) {
+        this.remoteHost = remoteHost;
+    }
+
+    public int getPort() {
+        return this.port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Set the number of encoded events held in memory before the worker picks
+     * them up. Events are dropped when it is full. Default is 8192.
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Set the maximum number of events per frame. Default is 512.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set how long a partial batch may wait for more events. Also the timeout
+     * for reading acknowledgements. Default is 200 ms.
+     */
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * Set the number of frames sent without being acknowledged before new
+     * frames are spilled to disk. Default is 16.
+     */
+    public void setMaxInFlightFrames(int maxInFlightFrames) {
+        this.maxInFlightFrames = maxInFlightFrames;
+    }
+
+    /**
+     * Set the {@link Deflater} level. Default is {@link Deflater#BEST_SPEED}.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    /**
+     * Set how long a frame may take to be written before the connection is
+     * dropped and frames are spilled until the receiver reads again. Default
+     * is 10 seconds.
+     */
+    public void setWriteTimeoutMillis(long writeTimeoutMillis) {
+        this.writeTimeoutMillis = writeTimeoutMillis;
+    }
+
+    /**
+     * Set how long the oldest unacknowledged frame may wait for its
+     * acknowledgement before the connection is dropped and the frames are
+     * sent again. Default is 30 seconds.
+     */
+    public void setAckTimeoutMillis(long ackTimeoutMillis) {
+        this.ackTimeoutMillis = ackTimeoutMillis;
+    }
+
+    public void setReconnectionDelayMillis(long reconnectionDelayMillis) {
+        this.reconnectionDelayMillis = reconnectionDelayMillis;
+    }
+
+    /**
+     * Set how long {@link #stop()} waits for outstanding frames to be
+     * acknowledged while the receiver is connected. Default is 5 seconds.
+     */
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    /**
+     * Set the directory of the spill queue. Default is {@code logs/spill}.
+     */
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Set the maximum size of the spill queue on disk. Frames are dropped
+     * when it is full. Default is 512 MB.
+     */
+    public void setMaxSpillBytes(long maxSpillBytes) {
+        this.maxSpillBytes = maxSpillBytes;
+    }
+
+    public void setSpillSegmentBytes(long spillSegmentBytes) {
+        this.spillSegmentBytes = spillSegmentBytes;
+    }
+
+    public long getSentFrames() {
+        return this.sentFrames.get();
+    }
+
+    public long getAcknowledgedFrames() {
+        return this.acknowledgedFrames.get();
+    }
+
+    public long getSpilledFrames() {
+        return this.spilledFrames.get();
+    }
+
+    public long getDroppedEvents() {
+        return this.droppedEvents.get();
+    }
+
+    private static class Frame {
+
+        private final byte[] body;
+
+        private long sequence;
+
+        private long sentAt;
+
+        Frame(byte[] body) {
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.demojsonlogging.logger.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates a {@code FieldWriter} for every class annotated with
+ * {@code @LoggableFields} and registers them all in
+ * {@code META-INF/services}. Entries already in the service file are kept as
+ * long as their class can still be found, so an incremental compilation that
+ * only sees some of the annotated classes does not drop the other writers.
+ * <p>Fields inherited from superclasses are written too, through the getters
+ * Lombok generates for them, under the names Jackson gives those getters.
+ * <p>Compiled ahead of the rest of the sources, see the
+ * {@code maven-compiler-plugin} configuration in {@code pom.xml}.
+ */
+@SupportedAnnotationTypes(FieldWriterProcessor.ANNOTATION)
+public class FieldWriterProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "com.example.demojsonlogging.logger.LoggableFields";
+
+    private static final String FIELD_WRITER = "com.example.demojsonlogging.logger.FieldWriter";
+
+    private static final String FIELD_WRITERS = "com.example.demojsonlogging.logger.FieldWriters";
+
+    private static final String JSON_GENERATOR = "com.fasterxml.jackson.core.JsonGenerator";
+
+    private final List<String> generatedWriters = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+                    error(element, "@LoggableFields is only supported on concrete classes");
+                    continue;
+                }
+                try {
+                    this.generatedWriters.add(writeFieldWriter((TypeElement) element));
+                } catch (IOException e) {
+                    error(element, "Unable to generate field writer: " + e.getMessage());
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !this.generatedWriters.isEmpty()) {
+            writeServiceFile();
+        }
+        return true;
+    }
+
+    private String writeFieldWriter(TypeElement type) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String typeName = type.getQualifiedName().toString();
+        String writerSimpleName = type.getSimpleName() + "FieldWriter";
+        String writerName = packageName.isEmpty() ? writerSimpleName : packageName + "." + writerSimpleName;
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("/**\n * Generated by {@code ").append(getClass().getName()).append("}, do not edit.\n */\n");
+        source.append("public final class ").append(writerSimpleName)
+                .append(" implements ").append(FIELD_WRITER).append("<").append(typeName).append("> {\n\n");
+        source.append("    @Override\n");
+        source.append("    public Class<").append(typeName).append("> type() {\n");
+        source.append("        return ").append(typeName).append(".class;\n");
+        source.append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    public void writeFields(").append(typeName).append(" value, ")
+                .append(JSON_GENERATOR).append(" generator) throws java.io.IOException {\n");
+        for (VariableElement field : loggedFields(type)) {
+            appendField(source, field);
+        }
+        source.append("    }\n");
+        source.append("}\n");
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(writerName, type).openWriter()) {
+            writer.write(source.toString());
+        }
+        return writerName;
+    }
+
+    /**
+     * Return the instance fields of the type and of its superclasses, those
+     * of the superclasses first, as Jackson orders them. A field hidden by a
+     * subclass field of the same name is listed once, with the subclass type.
+     */
+    private List<VariableElement> loggedFields(TypeElement type) {
+        List<TypeElement> hierarchy = new ArrayList<>();
+        for (TypeElement current = type; current != null; current = superclassOf(current)) {
+            hierarchy.add(0, current);
+        }
+        Map<String, VariableElement> fields = new LinkedHashMap<>();
+        for (TypeElement current : hierarchy) {
+            for (Element member : current.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.FIELD && !member.getModifiers().contains(Modifier.STATIC)) {
+                    fields.put(member.getSimpleName().toString(), (VariableElement) member);
+                }
+            }
+        }
+        return new ArrayList<>(fields.values());
+    }
+
+    private static TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+    }
+
+    private void appendField(StringBuilder source, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        TypeMirror type = field.asType();
+        // Lombok keeps the name of a primitive boolean field that already reads isX
+        String accessor;
+        if (type.getKind() != TypeKind.BOOLEAN) {
+            accessor = "get" + capitalize(name);
+        } else if (name.length() > 2 && name.startsWith("is") && !Character.isLowerCase(name.charAt(2))) {
+            accessor = name;
+        } else {
+            accessor = "is" + capitalize(name);
+        }
+        String getter = accessor + "()";
+        String jsonName = "\"" + propertyName(accessor) + "\"";
+
+        switch (type.getKind()) {
+            case BOOLEAN:
+                source.append("        generator.writeBooleanField(").append(jsonName).append(", value.").append(getter).append(");\n");
+                return;
+            case CHAR:
+                source.append("        generator.writeStringField(").append(jsonName).append(", String.valueOf(value.").append(getter).append("));\n");
+                return;
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                source.append("        generator.writeNumberField(").append(jsonName).append(", value.").append(getter).append(");\n");
+                return;
+            default:
+                break;
+        }
+
+        String local = name + "Value";
+        source.append("        ").append(processingEnv.getTypeUtils().erasure(type)).append(" ").append(local)
+                .append(" = value.").append(getter).append(";\n");
+        String write;
+        switch (classify(type)) {
+            case STRING:
+                write = "generator.writeStringField(" + jsonName + ", " + local + ")";
+                break;
+            case ENUM:
+                write = "generator.writeStringField(" + jsonName + ", " + local + ".name())";
+                break;
+            case NUMBER:
+                write = "generator.writeNumberField(" + jsonName + ", " + local + ")";
+                break;
+            case BOOLEAN:
+                write = "generator.writeBooleanField(" + jsonName + ", " + local + ")";
+                break;
+            default:
+                source.append("        ").append(FIELD_WRITERS).append(".writeField(generator, ")
+                        .append(jsonName).append(", ").append(local).append(");\n");
+                return;
+        }
+        source.append("        if (").append(local).append(" == null) {\n");
+        source.append("            generator.writeNullField(").append(jsonName).append(");\n");
+        source.append("        } else {\n");
+        source.append("            ").append(write).append(";\n");
+        source.append("        }\n");
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Return the property name Jackson derives from a getter: the name
+     * without its prefix, with the leading upper case letters lowered.
+     */
+    private static String propertyName(String getter) {
+        StringBuilder name = new StringBuilder(getter.substring(getter.startsWith("is") ? 2 : 3));
+        for (int i = 0; i < name.length() && Character.isUpperCase(name.charAt(i)); i++) {
+            name.setCharAt(i, Character.toLowerCase(name.charAt(i)));
+        }
+        return name.toString();
+    }
+
+    private FieldKind classify(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return FieldKind.OBJECT;
+        }
+        Element element = ((DeclaredType) type).asElement();
+        if (element.getKind() == ElementKind.ENUM) {
+            return FieldKind.ENUM;
+        }
+        switch (((TypeElement) element).getQualifiedName().toString()) {
+            case "java.lang.String":
+                return FieldKind.STRING;
+            case "java.lang.Boolean":
+                return FieldKind.BOOLEAN;
+            case "java.lang.Byte":
+            case "java.lang.Short":
+            case "java.lang.Integer":
+            case "java.lang.Long":
+            case "java.lang.Float":
+            case "java.lang.Double":
+                return FieldKind.NUMBER;
+            default:
+                return FieldKind.OBJECT;
+        }
+    }
+
+    private void writeServiceFile() {
+        String resourceName = "META-INF/services/" + FIELD_WRITER;
+        try {
+            Set<String> writerNames = new TreeSet<>(readServiceFile(resourceName));
+            writerNames.addAll(this.generatedWriters);
+            FileObject file = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", resourceName);
+            try (Writer writer = file.openWriter()) {
+                for (String writerName : writerNames) {
+                    writer.write(writerName);
+                    writer.write("\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to register field writers: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read the writers registered by a previous compilation, skipping those
+     * whose class no longer exists.
+     */
+    private List<String> readServiceFile(String resourceName) throws IOException {
+        List<String> writerNames = new ArrayList<>();
+        FileObject file;
+        try {
+            file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", resourceName);
+        } catch (FileNotFoundException | NoSuchFileException | IllegalArgumentException e) {
+            return writerNames;
+        }
+        try (BufferedReader reader = new BufferedReader(file.openReader(true))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                String writerName = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (!writerName.isEmpty() && isUsableWriter(writerName)) {
+                    writerNames.add(writerName);
+                }
+            }
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // first compilation, nothing registered yet
+        }
+        return writerNames;
+    }
+
+    private boolean isUsableWriter(String writerName) {
+        TypeElement writer = processingEnv.getElementUtils().getTypeElement(writerName);
+        if (writer == null) {
+            return false;
+        }
+        for (TypeMirror type : writer.getInterfaces()) {
+            List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+            if (!arguments.isEmpty() && arguments.get(0).getKind() == TypeKind.ERROR) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private enum FieldKind {
+        STRING,
+        ENUM,
+        NUMBER,
+        BOOLEAN,
+        OBJECT
+    }
+}
@@ -8,7 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import static net.logstash.logback.argument.StructuredArguments.fields;
+import static com.example.demojsonlogging.logger.FieldWriters.fields;
 
 @Service
 @Slf4j
@@ -0,0 +1,53 @@
+package com.example.demojsonlogging.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BodyCapturePolicyTests {
+
+    private final BodyCapturePolicy policy = new BodyCapturePolicy();
+
+    @Test
+    void capturesTextualBodies() {
+        assertThat(this.policy.shouldCapture("application/json", 100)).isTrue();
+        assertThat(this.policy.shouldCapture("text/plain;charset=UTF-8", -1)).isTrue();
+        assertThat(this.policy.shouldCapture(null, -1)).isTrue();
+    }
+
+    @Test
+    void skipsMediaTypesMatchingWildcards() {
+        assertThat(this.policy.shouldCapture("multipart/form-data; boundary=abc", 100)).isFalse();
+        assertThat(this.policy.shouldCapture("image/png", 100)).isFalse();
+        assertThat(this.policy.shouldCapture("video/mp4", 100)).isFalse();
+        assertThat(this.policy.shouldCapture("application/octet-stream", 100)).isFalse();
+        assertThat(this.policy.shouldCapture("text/event-stream", -1)).isFalse();
+    }
+
+    @Test
+    void skipsBodiesDeclaredLargerThanTheLimit() {
+        this.policy.setMaxContentLength(10);
+
+        assertThat(this.policy.shouldCapture("application/json", 10)).isTrue();
+        assertThat(this.policy.shouldCapture("application/json", 11)).isFalse();
+        assertThat(this.policy.shouldCapture("application/json", -1)).isTrue();
+        assertThat(this.policy.shouldCapture(null, 11)).isFalse();
+    }
+
+    @Test
+    void skipsInvalidContentTypes() {
+        assertThat(this.policy.shouldCapture("not a media type", 100)).isFalse();
+        assertThat(this.policy.shouldCapture("application/", 100)).isFalse();
+    }
+
+    @Test
+    void usesConfiguredSkippedMediaTypes() {
+        this.policy.setSkippedMediaTypes(Collections.singletonList(MediaType.parseMediaType("text/*")));
+
+        assertThat(this.policy.shouldCapture("text/html", 100)).isFalse();
+        assertThat(this.policy.shouldCapture("image/png", 100)).isTrue();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demojsonlogging.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.StreamUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BodyCaptureRequestWrapperTests {
+
+    private final CaptureBufferPool pool = new CaptureBufferPool(64, 4);
+
+    @Test
+    void capturesTheFirstBytesReadFromTheBody() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/news");
+        request.setContentType("application/json");
+        request.setContent("{\"category\":\"sport\"}".getBytes(StandardCharsets.UTF_8));
+        BodyCaptureRequestWrapper wrapper = new BodyCaptureRequestWrapper(request, new CaptureBufferPool(8, 4));
+
+        assertThat(StreamUtils.copyToString(wrapper.getInputStream(), StandardCharsets.UTF_8))
+                .isEqualTo("{\"category\":\"sport\"}");
+        assertThat(wrapper.getContentAsString(100)).isEqualTo("{\"catego");
+    }
+
+    @Test
+    void rebuildsFormPostBodyFromParameters() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/news");
+        request.setContentType("application/x-www-form-urlencoded");
+        request.addParameter("title", "a b");
+        request.addParameter("tag", "x", "y");
+        BodyCaptureRequestWrapper wrapper = new BodyCaptureRequestWrapper(request, this.pool);
+
+        assertThat(wrapper.getParameter("title")).isEqualTo("a b");
+        assertThat(wrapper.getParameterValues("tag")).containsExactly("x", "y");
+        assertThat(wrapper.getContentAsString(100)).isEqualTo("title=a+b&tag=x&tag=y");
+    }
+
+    @Test
+    void leavesParametersOfOtherRequestsOutOfTheCapture() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/news");
+        request.addParameter("category", "sport");
+        BodyCaptureRequestWrapper wrapper = new BodyCaptureRequestWrapper(request, this.pool);
+
+        assertThat(wrapper.getParameterMap()).containsKey("category");
+        assertThat(wrapper.getContentAsString(100)).isNull();
+        assertThat(this.pool.getMisses()).isZero();
+    }
+
+    @Test
+    void returnsTheBufferOnRelease() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/news");
+        request.setContentType("application/x-www-form-urlencoded");
+        request.addParameter("title", "x");
+        BodyCaptureRequestWrapper wrapper = new BodyCaptureRequestWrapper(request, this.pool);
+        wrapper.getParameterNames();
+        int available = this.pool.getAvailable();
+
+        wrapper.release();
+
+        assertThat(this.pool.getAvailable()).isEqualTo(available + 1);
+        assertThat(wrapper.getContentAsString(100)).isNull();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demojsonlogging.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BodyCaptureResponseWrapperTests {
+
+    private final CaptureBufferPool pool = new CaptureBufferPool(8, 4);
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    private final BodyCaptureResponseWrapper wrapper =
+            new BodyCaptureResponseWrapper(this.response, this.pool, new BodyCapturePolicy());
+
+    @Test
+    void writesThroughAndCapturesTheFirstBytes() throws Exception {
+        this.wrapper.setContentType("application/json");
+        this.wrapper.getOutputStream().write("{\"id\":1,\"title\":\"x\"}".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(this.response.getContentAsString()).isEqualTo("{\"id\":1,\"title\":\"x\"}");
+        assertThat(this.wrapper.getContentAsString("UTF-8", 100)).isEqualTo("{\"id\":1,");
+        assertThat(this.wrapper.getContentAsString("UTF-8", 4)).isEqualTo("{\"id");
+    }
+
+    @Test
+    void capturesWhatIsWrittenThroughTheWriter() throws Exception {
+        this.wrapper.setContentType("text/plain");
+        this.wrapper.setCharacterEncoding("UTF-8");
+        PrintWriter writer = this.wrapper.getWriter();
+        writer.write("hello");
+
+        this.wrapper.flushWriter();
+
+        assertThat(this.response.getContentAsString()).isEqualTo("hello");
+        assertThat(this.wrapper.getContentAsString("UTF-8", 100)).isEqualTo("hello");
+    }
+
+    @Test
+    void skipsBodiesRejectedByThePolicy() throws Exception {
+        this.wrapper.setContentType("image/png");
+        this.wrapper.getOutputStream().write(new byte[] {1, 2, 3});
+
+        assertThat(this.response.getContentAsByteArray()).containsExactly(1, 2, 3);
+        assertThat(this.wrapper.getContentAsString("UTF-8", 100)).isNull();
+        assertThat(this.pool.getSkips()).isEqualTo(1);
+        assertThat(this.pool.getMisses()).isZero();
+    }
+
+    @Test
+    void skipsBodiesDeclaredTooLarge() throws Exception {
+        BodyCapturePolicy policy = new BodyCapturePolicy();
+        policy.setMaxContentLength(2);
+        BodyCaptureResponseWrapper wrapper = new BodyCaptureResponseWrapper(this.response, this.pool, policy);
+        wrapper.setContentLength(3);
+        wrapper.getOutputStream().write(new byte[] {'a', 'b', 'c'});
+
+        assertThat(wrapper.getContentAsString("UTF-8", 100)).isNull();
+        assertThat(this.pool.getSkips()).isEqualTo(1);
+    }
+
+    @Test
+    void resetBufferDropsTheCapturedBytes() throws Exception {
+        this.wrapper.getOutputStream().write("first".getBytes(StandardCharsets.UTF_8));
+        this.wrapper.resetBuffer();
+        this.wrapper.getOutputStream().write("second".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(this.wrapper.getContentAsString("UTF-8", 100)).isEqualTo("second");
+    }
+
+    @Test
+    void releaseReturnsTheBufferToThePool() throws Exception {
+        this.wrapper.getOutputStream().write('a');
+        assertThat(this.pool.getMisses()).isEqualTo(1);
+
+        this.wrapper.release();
+        this.wrapper.getOutputStream().write('b');
+
+        assertThat(this.pool.getAvailable()).isEqualTo(1);
+        assertThat(this.wrapper.getContentAsString("UTF-8", 100)).isNull();
+        assertThat(this.response.getContentAsString()).isEqualTo("ab");
+    }
+}
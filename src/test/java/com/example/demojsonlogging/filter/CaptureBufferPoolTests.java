@@ -0,0 +1,52 @@
+package com.example.demojsonlogging.filter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaptureBufferPoolTests {
+
+    private final CaptureBufferPool pool = new CaptureBufferPool(16, 2);
+
+    @Test
+    void allocatesOnMissAndReusesReleasedBuffers() {
+        byte[] first = this.pool.acquire();
+        assertThat(first).hasSize(16);
+        assertThat(this.pool.getMisses()).isEqualTo(1);
+        assertThat(this.pool.getHits()).isZero();
+
+        this.pool.release(first);
+        assertThat(this.pool.getAvailable()).isEqualTo(1);
+
+        assertThat(this.pool.acquire()).isSameAs(first);
+        assertThat(this.pool.getHits()).isEqualTo(1);
+        assertThat(this.pool.getMisses()).isEqualTo(1);
+        assertThat(this.pool.getAvailable()).isZero();
+    }
+
+    @Test
+    void keepsAtMostCapacityBuffers() {
+        this.pool.release(new byte[16]);
+        this.pool.release(new byte[16]);
+        this.pool.release(new byte[16]);
+
+        assertThat(this.pool.getAvailable()).isEqualTo(2);
+    }
+
+    @Test
+    void dropsBuffersOfAnotherSize() {
+        this.pool.release(new byte[8]);
+
+        assertThat(this.pool.getAvailable()).isZero();
+    }
+
+    @Test
+    void countsSkips() {
+        this.pool.recordSkip();
+        this.pool.recordSkip();
+
+        assertThat(this.pool.getSkips()).isEqualTo(2);
+        assertThat(this.pool.getHits()).isZero();
+        assertThat(this.pool.getMisses()).isZero();
+    }
+}
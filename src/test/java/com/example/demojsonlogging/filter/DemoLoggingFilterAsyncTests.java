@@ -0,0 +1,32 @@
+package com.example.demojsonlogging.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class DemoLoggingFilterAsyncTests {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private CaptureBufferPool captureBufferPool;
+
+    @Test
+    void releasesCaptureBuffersOnAsyncDispatch() throws Exception {
+        int available = this.captureBufferPool.getAvailable();
+
+        String body = this.restTemplate.getForObject("/news/async-controller", String.class);
+
+        assertThat(body).isEqualTo("Hello World !!");
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (this.captureBufferPool.getAvailable() <= available && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(this.captureBufferPool.getAvailable()).isGreaterThan(available);
+    }
+}
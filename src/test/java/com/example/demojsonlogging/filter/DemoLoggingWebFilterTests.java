@@ -0,0 +1,260 @@
+package com.example.demojsonlogging.filter;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.example.demojsonlogging.logger.ReactorMdc;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.logstash.logback.argument.StructuredArgument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DemoLoggingWebFilterTests {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(DemoLoggingWebFilter.class);
+
+    private final Logger servletLogger = (Logger) LoggerFactory.getLogger(DemoLoggingFilter.class);
+
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<ILoggingEvent>() {
+        @Override
+        protected void append(ILoggingEvent event) {
+            // keep the MDC of the log call, it is read lazily otherwise
+            event.prepareForDeferredProcessing();
+            super.append(event);
+        }
+    };
+
+    private final ListAppender<ILoggingEvent> servletAppender = new ListAppender<>();
+
+    private final DemoLoggingWebFilter filter = new DemoLoggingWebFilter();
+
+    @BeforeEach
+    void setUp() {
+        this.appender.start();
+        this.logger.addAppender(this.appender);
+        this.servletAppender.start();
+        this.servletLogger.addAppender(this.servletAppender);
+        this.filter.setShouldLogBefore(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.logger.detachAppender(this.appender);
+        this.servletLogger.detachAppender(this.servletAppender);
+    }
+
+    @Test
+    void carriesRequestIdInTheReactorContextToHandlerLogCalls() {
+        this.filter.setShouldLogBefore(true);
+        AtomicReference<String> outsideLogCall = new AtomicReference<>("unset");
+        AtomicReference<String> insideLogCall = new AtomicReference<>();
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/news"));
+
+        this.filter.filter(exchange, ex -> Mono.just("news")
+                .doOnNext(news -> outsideLogCall.set(MDC.get(ReactorMdc.REQUEST_ID)))
+                .doOnEach(ReactorMdc.logOnNext(news -> insideLogCall.set(MDC.get(ReactorMdc.REQUEST_ID))))
+                .then()).block();
+
+        String requestId = event("START").getMDCPropertyMap().get(ReactorMdc.REQUEST_ID);
+        assertThat(requestId).isNotNull();
+        assertThat(event("END").getMDCPropertyMap()).containsEntry(ReactorMdc.REQUEST_ID, requestId);
+        assertThat(insideLogCall).hasValue(requestId);
+        assertThat(outsideLogCall.get()).isNull();
+        assertThat(MDC.get(ReactorMdc.REQUEST_ID)).isNull();
+    }
+
+    @Test
+    void capturesBoundedPrefixOfMultiBufferBodiesWithoutAggregating() {
+        CaptureBufferPool pool = new CaptureBufferPool(5, 4);
+        this.filter.setIncludePayload(true);
+        this.filter.setMaxPayloadLength(5);
+        this.filter.setCaptureBufferPool(pool);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/news")
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(Flux.just(buffer("abc"), buffer("def"), buffer("ghi"))));
+        List<Integer> requestChunks = new ArrayList<>();
+
+        this.filter.filter(exchange, ex -> ex.getRequest().getBody()
+                .doOnNext(chunk -> requestChunks.add(chunk.readableByteCount()))
+                .then(Mono.defer(() -> {
+                    ex.getResponse().getHeaders().setContentType(MediaType.TEXT_PLAIN);
+                    return ex.getResponse().writeWith(Flux.just(buffer("123"), buffer("456"), buffer("789")));
+                }))).block();
+
+        assertThat(requestChunks).containsExactly(3, 3, 3);
+        assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo("123456789");
+        assertThat(endMessage()).contains("request_body=abcde", "response_body=12345");
+        assertThat(pool.getAvailable()).isEqualTo(2);
+    }
+
+    @Test
+    void skipsBodiesRejectedByThePolicy() {
+        CaptureBufferPool pool = new CaptureBufferPool(50, 4);
+        this.filter.setIncludePayload(true);
+        this.filter.setCaptureBufferPool(pool);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/upload")
+                .contentType(MediaType.IMAGE_PNG)
+                .body(Flux.just(buffer("png"))));
+
+        this.filter.filter(exchange, ex -> ex.getRequest().getBody()
+                .then(Mono.defer(() -> {
+                    ex.getResponse().getHeaders().setContentType(MediaType.APPLICATION_OCTET_STREAM);
+                    return ex.getResponse().writeWith(Flux.just(buffer("bin")));
+                }))).block();
+
+        assertThat(endMessage()).doesNotContain("request_body", "response_body");
+        assertThat(pool.getSkips()).isEqualTo(2);
+        assertThat(pool.getMisses()).isZero();
+    }
+
+    @Test
+    void logsTheSameFieldsAsTheServletFilter() throws Exception {
+        DemoLoggingFilter servletFilter = new DemoLoggingFilter();
+        servletFilter.setIncludeQueryString(true);
+        servletFilter.setIncludeClientInfo(true);
+        servletFilter.setIncludeHeaders(true);
+        servletFilter.setIncludePayload(true);
+        servletFilter.setCaptureBufferPool(new CaptureBufferPool(50, 4));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/news");
+        request.setQueryString("page=1");
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.addHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
+        request.setContent("{\"category\":\"sport\"}".getBytes(StandardCharsets.UTF_8));
+        servletFilter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            StreamUtils.copyToByteArray(req.getInputStream());
+            res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            res.getWriter().write("{\"id\":1}");
+        });
+
+        this.filter.setShouldLogBefore(true);
+        this.filter.setIncludeQueryString(true);
+        this.filter.setIncludeClientInfo(true);
+        this.filter.setIncludeHeaders(true);
+        this.filter.setIncludePayload(true);
+        this.filter.setCaptureBufferPool(new CaptureBufferPool(50, 4));
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/news?page=1")
+                .remoteAddress(new InetSocketAddress("127.0.0.1", 50000))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .body("{\"category\":\"sport\"}"));
+        this.filter.filter(exchange, ex -> DataBufferUtils.join(ex.getRequest().getBody())
+                .then(Mono.defer(() -> {
+                    ex.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    return ex.getResponse().writeWith(Mono.just(buffer("{\"id\":1}")));
+                }))).block();
+
+        assertThat(this.servletAppender.list).hasSize(2);
+        assertThat(fieldNames(event("START"))).isEqualTo(fieldNames(this.servletAppender.list.get(0)))
+                .contains("method", "request_uri", "full_uri", "client", "headers");
+        assertThat(fieldNames(event("END"))).isEqualTo(fieldNames(this.servletAppender.list.get(1)))
+                .contains("request_body", "response_code", "response_body", "duration", "type");
+    }
+
+    @Test
+    void logsStatusSetByTheHandler() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/news"));
+
+        this.filter.filter(exchange, ex -> {
+            ex.getResponse().setStatusCode(HttpStatus.CREATED);
+            return ex.getResponse().setComplete();
+        }).block();
+
+        assertThat(endMessage()).contains("response_code=201");
+    }
+
+    @Test
+    void logsStatusOfResponseStatusException() {
+        assertThat(endMessageOnError(new ResponseStatusException(HttpStatus.NOT_FOUND))).contains("response_code=404");
+    }
+
+    @Test
+    void logsStatusOfAnnotatedException() {
+        assertThat(endMessageOnError(new ConflictException())).contains("response_code=409");
+    }
+
+    @Test
+    void logsInternalServerErrorForOtherExceptions() {
+        assertThat(endMessageOnError(new IllegalStateException())).contains("response_code=500");
+    }
+
+    private String endMessageOnError(Exception error) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/news"));
+        WebFilterChain chain = ex -> Mono.error(error);
+
+        assertThatThrownBy(() -> this.filter.filter(exchange, chain).block()).isSameAs(error);
+        return endMessage();
+    }
+
+    private String endMessage() {
+        return event("END").getFormattedMessage();
+    }
+
+    private ILoggingEvent event(String kind) {
+        List<ILoggingEvent> events = this.appender.list.stream()
+                .filter(event -> event.getMessage().startsWith(kind + " "))
+                .collect(Collectors.toList());
+        assertThat(events).hasSize(1);
+        return events.get(0);
+    }
+
+    private static DataBuffer buffer(String content) {
+        return new DefaultDataBufferFactory().wrap(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Return the names of the JSON fields the structured arguments of the event add.
+     */
+    private static Set<String> fieldNames(ILoggingEvent event) throws IOException {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(json)) {
+            generator.writeStartObject();
+            for (Object argument : event.getArgumentArray()) {
+                ((StructuredArgument) argument).writeTo(generator);
+            }
+            generator.writeEndObject();
+        }
+        Set<String> names = new TreeSet<>();
+        MAPPER.readTree(json.toString()).fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    @ResponseStatus(HttpStatus.CONFLICT)
+    private static class ConflictException extends RuntimeException {
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.demojsonlogging.filter;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.StreamUtils;
+import reactor.core.publisher.Mono;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-request overhead of {@link DemoLoggingFilter} and
+ * {@link DemoLoggingWebFilter} for a small JSON POST, with both log messages
+ * encoded by a {@link LogstashEncoder} into a discarding stream.
+ * <p>Run with {@code mvn -Pbenchmark -DskipTests test}, which starts JMH in a
+ * separate JVM with the test classpath so that it can fork, or run
+ * {@link #main(String[])} from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RequestLoggingFilterBenchmark {
+
+    private static final String BODY = "{\"category\":\"sport\",\"type\":\"football\"}";
+
+    private static final byte[] BODY_BYTES = BODY.getBytes(StandardCharsets.UTF_8);
+
+    private DemoLoggingFilter servletFilter;
+
+    private DemoLoggingWebFilter webFilter;
+
+    @Setup
+    public void setUp() throws Exception {
+        configureLogging();
+
+        this.servletFilter = new DemoLoggingFilter();
+        this.servletFilter.setIncludeQueryString(true);
+        this.servletFilter.setIncludeClientInfo(true);
+        this.servletFilter.setIncludeHeaders(true);
+        this.servletFilter.setIncludePayload(true);
+        this.servletFilter.setMaxPayloadLength(2048);
+        this.servletFilter.afterPropertiesSet();
+
+        this.webFilter = new DemoLoggingWebFilter();
+        this.webFilter.setIncludeQueryString(true);
+        this.webFilter.setIncludeClientInfo(true);
+        this.webFilter.setIncludeHeaders(true);
+        this.webFilter.setIncludePayload(true);
+        this.webFilter.setMaxPayloadLength(2048);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse servletFilter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/news");
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(BODY_BYTES);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        this.servletFilter.doFilter(request, response, (req, res) -> {
+            StreamUtils.copyToByteArray(req.getInputStream());
+            res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            res.getOutputStream().write(BODY_BYTES);
+        });
+        return response;
+    }
+
+    @Benchmark
+    public MockServerHttpResponse webFilter() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/news")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BODY));
+        this.webFilter.filter(exchange, ex -> DataBufferUtils.join(ex.getRequest().getBody())
+                .flatMap(body -> {
+                    DataBufferUtils.release(body);
+                    ex.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    return ex.getResponse().writeWith(Mono.just(ex.getResponse().bufferFactory().wrap(BODY_BYTES)));
+                }))
+                .block();
+        return exchange.getResponse();
+    }
+
+    private static void configureLogging() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+
+        LogstashEncoder encoder = new LogstashEncoder();
+        encoder.setContext(context);
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        appender.start();
+
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(appender);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RequestLoggingFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.demojsonlogging.logger;
+
+import lombok.Data;
+
+/**
+ * Superclass of {@link RetriedEvent}, not annotated itself.
+ */
+@Data
+class AuditedEvent {
+    private String source;
+    private boolean isAudited;
+}
@@ -0,0 +1,92 @@
+package com.example.demojsonlogging.logger;
+
+import com.example.demojsonlogging.dto.FakeNews;
+import com.example.demojsonlogging.dto.FakeNewsReqDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.logstash.logback.argument.StructuredArgument;
+import net.logstash.logback.argument.StructuredArguments;
+import net.logstash.logback.marker.ObjectFieldsAppendingMarker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FieldWritersTests {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static Stream<LogData> logData() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", 2);
+        map.put("ids", Arrays.asList(1, 2));
+        map.put("missing", null);
+        RetriedEvent retried = new RetriedEvent();
+        retried.setSource("queue");
+        retried.setAudited(true);
+        retried.setRetry(true);
+        retried.setIsCached(false);
+        retried.setXCoord("x");
+        return Stream.of(
+                LogData.builder().message_tag(Tag.GATEWAY).data(map).build(),
+                LogData.builder().message_tag(Tag.RABBITMQ).data("plain text").build(),
+                LogData.builder().message_tag(Tag.GATEWAY).data(new FakeNewsReqDTO("sport", null)).build(),
+                LogData.builder().data(new FakeNews(7, "title")).build(),
+                LogData.builder().message_tag(Tag.GATEWAY).data(retried).build(),
+                LogData.builder().data(new RetriedEvent()).build(),
+                LogData.builder().build());
+    }
+
+    @ParameterizedTest
+    @MethodSource("logData")
+    void generatedWriterMatchesStructuredArgumentsFields(LogData data) throws IOException {
+        StructuredArgument generated = FieldWriters.fields(data);
+        assertThat(generated).isNotInstanceOf(ObjectFieldsAppendingMarker.class);
+
+        JsonNode expected = render(StructuredArguments.fields(data));
+        JsonNode actual = render(generated);
+
+        assertThat(actual).isEqualTo(expected);
+        assertThat(actual.has("message_tag")).isTrue();
+        assertThat(actual.get("message_tag").isNull()).isEqualTo(data.getMessage_tag() == null);
+        if (data.getMessage_tag() != null) {
+            assertThat(actual.get("message_tag").asText()).isEqualTo(data.getMessage_tag().name());
+        }
+    }
+
+    @Test
+    void generatedWriterIncludesInheritedFieldsUnderJacksonNames() throws IOException {
+        RetriedEvent event = new RetriedEvent();
+        event.setSource("queue");
+        event.setAudited(true);
+        event.setRetry(true);
+
+        StructuredArgument generated = FieldWriters.fields(event);
+        assertThat(generated).isNotInstanceOf(ObjectFieldsAppendingMarker.class);
+
+        JsonNode actual = render(generated);
+        assertThat(actual).isEqualTo(render(StructuredArguments.fields(event)));
+        assertThat(actual.get("source").asText()).isEqualTo("queue");
+        assertThat(actual.get("audited").asBoolean()).isTrue();
+        assertThat(actual.get("retry").asBoolean()).isTrue();
+    }
+
+    private static JsonNode render(StructuredArgument argument) throws IOException {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(json)) {
+            generator.writeStartObject();
+            argument.writeTo(generator);
+            generator.writeEndObject();
+        }
+        return MAPPER.readTree(json.toString());
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demojsonlogging.logger;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Inherits fields and mixes the boolean naming styles Lombok and Jackson
+ * treat specially.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@LoggableFields
+class RetriedEvent extends AuditedEvent {
+    private boolean isRetry;
+    private boolean enabled;
+    private Boolean isCached;
+    private String xCoord;
+}
@@ -0,0 +1,54 @@
+package com.example.demojsonlogging.logger.appender;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.encoder.EncoderBase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Encoder that counts the events it encodes. Either delegates to another
+ * encoder or writes {@code <prefix><message>\n}.
+ */
+class CountingEncoder extends EncoderBase<ILoggingEvent> {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    private final Encoder<ILoggingEvent> delegate;
+
+    private final String prefix;
+
+    CountingEncoder(String prefix) {
+        this.delegate = null;
+        this.prefix = prefix;
+    }
+
+    CountingEncoder(Encoder<ILoggingEvent> delegate) {
+        this.delegate = delegate;
+        this.prefix = null;
+    }
+
+    int getCount() {
+        return this.count.get();
+    }
+
+    @Override
+    public byte[] headerBytes() {
+        return this.delegate != null ? this.delegate.headerBytes() : null;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        this.count.incrementAndGet();
+        if (this.delegate != null) {
+            return this.delegate.encode(event);
+        }
+        return (this.prefix + event.getFormattedMessage() + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return this.delegate != null ? this.delegate.footerBytes() : null;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.demojsonlogging.logger.appender;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.filter.ThresholdFilter;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.status.Status;
+import ch.qos.logback.core.spi.FilterReply;
+import ch.qos.logback.core.status.StatusUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FanOutAppenderTests {
+
+    private final LoggerContext context = new LoggerContext();
+
+    private final Logger logger = this.context.getLogger("fan-out-test");
+
+    private final CountingEncoder text = new CountingEncoder("text:");
+
+    private final CountingEncoder json = new CountingEncoder("json:");
+
+    private final FanOutAppender appender = new FanOutAppender();
+
+    @Test
+    void encodesEachEventOnceForAllSinks() {
+        ByteArrayOutputStream first = addSink("first", "json", Level.TRACE);
+        ByteArrayOutputStream second = addSink("second", "json", Level.TRACE);
+        start();
+
+        this.logger.info("hello");
+
+        assertThat(this.json.getCount()).isEqualTo(1);
+        assertThat(this.text.getCount()).isZero();
+        assertThat(contentOf(first)).isEqualTo("json:hello\n");
+        assertThat(contentOf(second)).isEqualTo("json:hello\n");
+    }
+
+    @Test
+    void skipsEncodingsNoSinkWouldAccept() {
+        ByteArrayOutputStream console = addSink("console", "text", Level.INFO);
+        ByteArrayOutputStream file = addSink("file", "json", Level.WARN);
+        start();
+
+        this.logger.debug("debug");
+        this.logger.info("info");
+        this.logger.warn("warn");
+
+        assertThat(this.text.getCount()).isEqualTo(2);
+        assertThat(this.json.getCount()).isEqualTo(1);
+        assertThat(contentOf(console)).isEqualTo("text:info\ntext:warn\n");
+        assertThat(contentOf(file)).isEqualTo("json:warn\n");
+    }
+
+    @Test
+    void runsEveryEncodingForSinksWithoutPreEncodedEncoder() {
+        ListAppender<ILoggingEvent> list = new ListAppender<>();
+        list.setContext(this.context);
+        list.start();
+        this.appender.addAppender(list);
+        start();
+
+        this.logger.info("hello");
+
+        assertThat(this.text.getCount()).isEqualTo(1);
+        assertThat(this.json.getCount()).isEqualTo(1);
+        assertThat(list.list).hasSize(1);
+    }
+
+    @Test
+    void runsOtherSinkFiltersOnlyWhenTheSinkAppends() {
+        ByteArrayOutputStream file = addSink("file", "json", Level.TRACE);
+        AtomicInteger decisions = new AtomicInteger();
+        Filter<ILoggingEvent> noSecrets = new Filter<ILoggingEvent>() {
+            @Override
+            public FilterReply decide(ILoggingEvent event) {
+                decisions.incrementAndGet();
+                return event.getMessage().contains("secret") ? FilterReply.DENY : FilterReply.NEUTRAL;
+            }
+        };
+        noSecrets.start();
+        this.appender.getAppender("file").addFilter(noSecrets);
+        start();
+
+        this.logger.info("hello");
+        this.logger.info("secret");
+
+        assertThat(decisions).hasValue(2);
+        assertThat(this.json.getCount()).isEqualTo(2);
+        assertThat(contentOf(file)).isEqualTo("json:hello\n");
+    }
+
+    @Test
+    void usesEncodingExposedByEncodingSink() {
+        BytesSink sink = new BytesSink();
+        sink.setContext(this.context);
+        PreEncodedEncoder encoder = new PreEncodedEncoder();
+        encoder.setContext(this.context);
+        encoder.setEncoding("json");
+        encoder.start();
+        sink.encoder = encoder;
+        sink.start();
+        this.appender.addAppender(sink);
+        start();
+
+        this.logger.info("hello");
+
+        assertThat(this.text.getCount()).isZero();
+        assertThat(this.json.getCount()).isEqualTo(1);
+        assertThat(sink.written).containsExactly("json:hello\n");
+    }
+
+    @Test
+    void bindsNamedEncodingsFromJoranConfiguration() throws Exception {
+        JoranConfigurator configurator = new JoranConfigurator();
+        configurator.setContext(this.context);
+        configurator.doConfigure(new ByteArrayInputStream((""
+                + "<configuration>"
+                + "  <newRule pattern='*/appender/encoding'"
+                + "           actionClass='com.example.demojsonlogging.logger.appender.FanOutEncodingAction'/>"
+                + "  <appender name='sink' class='ch.qos.logback.core.read.ListAppender'/>"
+                + "  <appender name='fan-out' class='com.example.demojsonlogging.logger.appender.FanOutAppender'>"
+                + "    <encoding name='console'>"
+                + "      <encoder class='ch.qos.logback.classic.encoder.PatternLayoutEncoder'>"
+                + "        <pattern>%msg</pattern>"
+                + "      </encoder>"
+                + "    </encoding>"
+                + "    <appender-ref ref='sink'/>"
+                + "  </appender>"
+                + "  <root level='INFO'><appender-ref ref='fan-out'/></root>"
+                + "</configuration>").getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(new StatusUtil(this.context).getHighestLevel(0)).isLessThan(Status.ERROR);
+        FanOutAppender fanOut = (FanOutAppender) this.context.getLogger(Logger.ROOT_LOGGER_NAME).getAppender("fan-out");
+        assertThat(fanOut.isStarted()).isTrue();
+        assertThat(fanOut.getEncodings()).hasSize(1);
+        assertThat(fanOut.getEncodings().get(0).getName()).isEqualTo("console");
+        assertThat(fanOut.getEncodings().get(0).getEncoder()).isInstanceOf(PatternLayoutEncoder.class);
+    }
+
+    private ByteArrayOutputStream addSink(String name, String encoding, Level threshold) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PreEncodedEncoder encoder = new PreEncodedEncoder();
+        encoder.setContext(this.context);
+        encoder.setEncoding(encoding);
+        encoder.start();
+        ThresholdFilter filter = new ThresholdFilter();
+        filter.setLevel(threshold.levelStr);
+        filter.start();
+        OutputStreamAppender<ILoggingEvent> sink = new OutputStreamAppender<>();
+        sink.setContext(this.context);
+        sink.setName(name);
+        sink.setEncoder(encoder);
+        sink.setOutputStream(out);
+        sink.addFilter(filter);
+        sink.start();
+        this.appender.addAppender(sink);
+        return out;
+    }
+
+    private void start() {
+        this.text.setContext(this.context);
+        this.json.setContext(this.context);
+        this.appender.setContext(this.context);
+        this.appender.addEncoding(new FanOutEncoding("text", this.text));
+        this.appender.addEncoding(new FanOutEncoding("json", this.json));
+        this.appender.start();
+        this.logger.setLevel(Level.TRACE);
+        this.logger.addAppender(this.appender);
+    }
+
+    private static String contentOf(ByteArrayOutputStream out) {
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static class BytesSink extends AppenderBase<ILoggingEvent> implements EncodingSink {
+
+        private final List<String> written = new ArrayList<>();
+
+        private Encoder<ILoggingEvent> encoder;
+
+        @Override
+        public Encoder<ILoggingEvent> getEncoder() {
+            return this.encoder;
+        }
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            this.written.add(new String(this.encoder.encode(event), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.demojsonlogging.logger.appender;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Local stand-in for the log aggregator: accepts {@link LogFrames} over TCP,
+ * keeps the received event lines and acknowledges every frame, optionally
+ * after a delay to simulate a slow receiver, or not at all to simulate one
+ * that stopped acknowledging.
+ */
+class LogReceiverServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+
+    private final List<String> events = new ArrayList<>();
+
+    private volatile long ackDelayMillis;
+
+    private volatile boolean acknowledging = true;
+
+    LogReceiverServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(new InetSocketAddress("localhost", port));
+        Thread acceptor = new Thread(this::accept, "log-receiver-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    void setAckDelayMillis(long ackDelayMillis) {
+        this.ackDelayMillis = ackDelayMillis;
+    }
+
+    void setAcknowledging(boolean acknowledging) {
+        this.acknowledging = acknowledging;
+    }
+
+    int getConnectionCount() {
+        return this.connections.size();
+    }
+
+    List<String> getEvents() {
+        synchronized (this.events) {
+            return new ArrayList<>(this.events);
+        }
+    }
+
+    /**
+     * Wait until at least {@code count} events were received, or the timeout elapsed.
+     */
+    List<String> awaitEvents(int count, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this.events) {
+            while (this.events.size() < count && System.currentTimeMillis() < deadline) {
+                this.events.wait(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+            return new ArrayList<>(this.events);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+        for (Socket connection : this.connections) {
+            connection.close();
+        }
+    }
+
+    private void accept() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                Socket connection = this.serverSocket.accept();
+                this.connections.add(connection);
+                Thread reader = new Thread(() -> receive(connection), "log-receiver-connection");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void receive(Socket connection) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            while (true) {
+                long sequence = in.readLong();
+                byte[] body = LogFrames.readBody(in);
+                if (this.ackDelayMillis > 0) {
+                    Thread.sleep(this.ackDelayMillis);
+                }
+                String lines = new String(LogFrames.decodeEvents(body), StandardCharsets.UTF_8);
+                synchronized (this.events) {
+                    for (String line : lines.split("\n")) {
+                        this.events.add(line);
+                    }
+                    this.events.notifyAll();
+                }
+                if (this.acknowledging) {
+                    out.writeLong(sequence);
+                    out.flush();
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // connection closed
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.demojsonlogging.logger.appender;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.Encoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the fan-out set up by {@code logback-spring.xml}.
+ */
+@SpringBootTest
+@ExtendWith(OutputCaptureExtension.class)
+class LogbackSpringConfigurationTests {
+
+    private static final File JSON_LOG = new File("logs/app-json-logstash.log");
+
+    @Test
+    void encodesEachEventOnceForConsoleAndFile(CapturedOutput output) throws Exception {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        FanOutAppender fanOut = (FanOutAppender) context.getLogger(Logger.ROOT_LOGGER_NAME).getAppender("fan-out");
+        assertThat(fanOut.isStarted()).isTrue();
+        assertThat(fanOut.getAppender("async-console")).isNotNull();
+        assertThat(fanOut.getAppender("async-json-logstash")).isNotNull();
+
+        Map<String, CountingEncoder> counters = new HashMap<>();
+        Map<FanOutEncoding, Encoder<ILoggingEvent>> originals = new HashMap<>();
+        for (FanOutEncoding encoding : fanOut.getEncodings()) {
+            CountingEncoder counter = new CountingEncoder(encoding.getEncoder());
+            counter.setContext(context);
+            counter.start();
+            originals.put(encoding, encoding.getEncoder());
+            counters.put(encoding.getName(), counter);
+            encoding.setEncoder(counter);
+        }
+        try {
+            String message = "fan-out check " + UUID.randomUUID();
+            LoggerFactory.getLogger(getClass()).info(message);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while ((!output.getOut().contains(message) || !jsonLogContains(message))
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(output.getOut()).containsOnlyOnce(message);
+            assertThat(jsonLogContains(message)).isTrue();
+            assertThat(counters.keySet()).containsExactlyInAnyOrder("console", "json");
+            assertThat(counters.get("console").getCount()).isEqualTo(1);
+            assertThat(counters.get("json").getCount()).isEqualTo(1);
+        } finally {
+            originals.forEach(FanOutEncoding::setEncoder);
+        }
+    }
+
+    private static boolean jsonLogContains(String message) throws Exception {
+        return JSON_LOG.exists()
+                && new String(Files.readAllBytes(JSON_LOG.toPath()), StandardCharsets.UTF_8).contains(message);
+    }
+}
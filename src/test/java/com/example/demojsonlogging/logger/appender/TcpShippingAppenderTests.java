@@ -0,0 +1,329 @@
+package com.example.demojsonlogging.logger.appender;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TcpShippingAppenderTests {
+
+    private final LoggerContext context = new LoggerContext();
+
+    private final Logger logger = this.context.getLogger("shipping-test");
+
+    @TempDir
+    File spillDirectory;
+
+    private LogReceiverServer server;
+
+    private TcpShippingAppender appender;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.server = new LogReceiverServer(0);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (this.appender != null) {
+            this.appender.stop();
+        }
+        this.server.close();
+    }
+
+    @Test
+    void shipsAllEventsInOrder() throws Exception {
+        this.appender = startAppender(this.server.getPort());
+
+        int count = 50_000;
+        long start = System.nanoTime();
+        List<String> expected = log(0, count);
+        List<String> received = this.server.awaitEvents(count, 30_000);
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        assertThat(received).containsExactlyElementsOf(expected);
+        assertThat(this.appender.getDroppedEvents()).isZero();
+        // a few hundred ms on a developer machine, the bound only catches a broken pipeline
+        assertThat(elapsedMillis).isLessThan(10_000);
+    }
+
+    @Test
+    void spillsToDiskWhileReceiverIsSlow() throws Exception {
+        this.server.setAckDelayMillis(50);
+        this.appender = newAppender(this.server.getPort());
+        this.appender.setBatchSize(10);
+        this.appender.setMaxInFlightFrames(2);
+        this.appender.start();
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.addAll(log(i * 50, 50));
+            Thread.sleep(20);
+        }
+        assertThat(this.appender.getSpilledFrames()).isPositive();
+
+        this.server.setAckDelayMillis(0);
+        assertThat(this.server.awaitEvents(expected.size(), 30_000)).containsExactlyElementsOf(expected);
+        assertThat(this.appender.getDroppedEvents()).isZero();
+    }
+
+    @Test
+    void replaysSpilledFramesInOrderOnceReceiverIsBack() throws Exception {
+        int port = freePort();
+        this.appender = startAppender(port);
+
+        List<String> expected = log(0, 1000);
+        waitUntil(() -> this.appender.getSpilledFrames() > 0);
+        expected.addAll(log(1000, 1000));
+
+        try (LogReceiverServer lateServer = new LogReceiverServer(port)) {
+            assertThat(lateServer.awaitEvents(expected.size(), 30_000)).containsExactlyElementsOf(expected);
+        }
+        assertThat(this.appender.getDroppedEvents()).isZero();
+    }
+
+    @Test
+    void keepsSpilledFramesAcrossRestart() throws Exception {
+        int port = freePort();
+        TcpShippingAppender first = newAppender(port);
+        first.setShutdownTimeoutMillis(200);
+        first.start();
+        List<String> expected = log(first, 0, 1000);
+        first.stop();
+        assertThat(this.spillDirectory.list()).isNotEmpty();
+
+        try (LogReceiverServer lateServer = new LogReceiverServer(port)) {
+            this.appender = startAppender(port);
+            expected.addAll(log(1000, 100));
+            assertThat(lateServer.awaitEvents(expected.size(), 30_000)).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void dropsHalfWrittenSpillRecordOnRestart() throws Exception {
+        int port = freePort();
+        TcpShippingAppender first = newAppender(port);
+        first.setShutdownTimeoutMillis(200);
+        first.start();
+        List<String> expected = log(first, 0, 1000);
+        first.stop();
+
+        File[] segments = this.spillDirectory.listFiles();
+        assertThat(segments).isNotEmpty();
+        File last = segments[0];
+        for (File segment : segments) {
+            if (segment.getName().compareTo(last.getName()) > 0) {
+                last = segment;
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(last, true))) {
+            // a record header announcing more bytes than were written before a crash
+            out.writeInt(4096);
+            out.write(new byte[100]);
+        }
+        long corruptLength = last.length();
+
+        try (LogReceiverServer lateServer = new LogReceiverServer(port)) {
+            this.appender = startAppender(port);
+            assertThat(last.length() == 0 || last.length() == corruptLength - 104).isTrue();
+            expected.addAll(log(1000, 100));
+            assertThat(lateServer.awaitEvents(expected.size(), 30_000)).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void replaysFramesInFlightAtShutdownOnceAndInOrder() throws Exception {
+        int port = freePort();
+        TcpShippingAppender first = newAppender(port);
+        first.setBatchSize(10);
+        first.setShutdownTimeoutMillis(200);
+        first.start();
+        List<String> expected = log(first, 0, 1000);
+        first.stop();
+
+        // the spilled frames are read from the head segment but never acknowledged
+        try (LogReceiverServer silentServer = new LogReceiverServer(port)) {
+            silentServer.setAcknowledging(false);
+            TcpShippingAppender second = newAppender(port);
+            second.setMaxInFlightFrames(4);
+            second.setShutdownTimeoutMillis(200);
+            second.start();
+            assertThat(silentServer.awaitEvents(40, 10_000)).hasSize(40);
+            second.stop();
+        }
+
+        try (LogReceiverServer lateServer = new LogReceiverServer(port)) {
+            this.appender = startAppender(port);
+            assertThat(lateServer.awaitEvents(expected.size(), 30_000)).containsExactlyElementsOf(expected);
+            Thread.sleep(200);
+            assertThat(lateServer.getEvents()).hasSize(expected.size());
+        }
+    }
+
+    @Test
+    void resendsFramesWhenReceiverStopsAcknowledging() throws Exception {
+        this.server.setAcknowledging(false);
+        this.appender = newAppender(this.server.getPort());
+        this.appender.setAckTimeoutMillis(300);
+        this.appender.start();
+
+        log(0, 10);
+
+        waitUntil(() -> this.server.getConnectionCount() >= 2);
+        waitUntil(() -> this.server.getEvents().stream().filter("event 0"::equals).count() >= 2);
+        assertThat(this.appender.getDroppedEvents()).isZero();
+    }
+
+    @Test
+    void stopsWithoutWaitingWhenReceiverIsDown() throws Exception {
+        int port = freePort();
+        TcpShippingAppender down = newAppender(port);
+        down.setShutdownTimeoutMillis(5000);
+        down.start();
+        log(down, 0, 100);
+        waitUntil(() -> down.getSpilledFrames() > 0);
+
+        long start = System.nanoTime();
+        down.stop();
+
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(2000);
+        assertThat(this.spillDirectory.list()).isNotEmpty();
+    }
+
+    @Test
+    void ignoresStrayFilesInSpillDirectory() throws Exception {
+        File stray = new File(this.spillDirectory, "spill-old.seg");
+        assertThat(stray.createNewFile()).isTrue();
+
+        this.appender = startAppender(this.server.getPort());
+        List<String> expected = log(0, 100);
+
+        assertThat(this.appender.isStarted()).isTrue();
+        assertThat(this.server.awaitEvents(expected.size(), 30_000)).containsExactlyElementsOf(expected);
+        assertThat(stray).exists();
+        assertThat(this.context.getStatusManager().getCopyOfStatusList())
+                .anyMatch(status -> status.getMessage().contains("spill-old.seg"));
+    }
+
+    @Test
+    void disconnectsWhenReceiverStopsReading() throws Exception {
+        try (ServerSocket stalled = new ServerSocket()) {
+            stalled.setReceiveBufferSize(4096);
+            stalled.bind(new InetSocketAddress("localhost", 0));
+            List<Socket> connections = new CopyOnWriteArrayList<>();
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        connections.add(stalled.accept());
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            this.appender = newAppender(stalled.getLocalPort());
+            this.appender.setBatchSize(1000);
+            this.appender.setWriteTimeoutMillis(300);
+            this.appender.setShutdownTimeoutMillis(200);
+            this.appender.start();
+            for (int i = 0; i < 10_000; i++) {
+                log(randomMessage(2048));
+            }
+
+            // the watchdog dropped the stalled connection, so the worker reconnected
+            waitUntil(() -> connections.size() >= 2);
+            waitUntil(() -> this.appender.getSpilledFrames() > 0);
+            for (Socket connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    private TcpShippingAppender startAppender(int port) {
+        TcpShippingAppender appender = newAppender(port);
+        appender.start();
+        return appender;
+    }
+
+    private TcpShippingAppender newAppender(int port) {
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(this.context);
+        encoder.setPattern("%msg%n");
+        encoder.start();
+
+        TcpShippingAppender appender = new TcpShippingAppender();
+        appender.setContext(this.context);
+        appender.setName("tcp-test");
+        appender.setEncoder(encoder);
+        appender.setRemoteHost("localhost");
+        appender.setPort(port);
+        appender.setQueueSize(100_000);
+        appender.setFlushIntervalMillis(50);
+        appender.setReconnectionDelayMillis(100);
+        appender.setSpillDirectory(this.spillDirectory.getAbsolutePath());
+        return appender;
+    }
+
+    private void log(String message) {
+        this.appender.doAppend(new LoggingEvent(Logger.class.getName(), this.logger, Level.INFO, message, null, null));
+    }
+
+    private static String randomMessage(int length) {
+        StringBuilder message = new StringBuilder(length);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < length; i++) {
+            message.append((char) ('!' + random.nextInt(94)));
+        }
+        return message.toString();
+    }
+
+    private List<String> log(int from, int count) {
+        return log(this.appender, from, count);
+    }
+
+    private List<String> log(TcpShippingAppender appender, int from, int count) {
+        List<String> messages = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            String message = "event " + i;
+            appender.doAppend(new LoggingEvent(Logger.class.getName(), this.logger, Level.INFO, message, null, null));
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}